@@ -0,0 +1,96 @@
+package org.anna.benchmarks;
+
+import org.anna.taskManager.manager.historyManager.ConcurrentHistoryManager;
+import org.anna.taskManager.manager.historyManager.HistoryManager;
+import org.anna.taskManager.manager.historyManager.HistoryPage;
+import org.anna.taskManager.manager.historyManager.InMemoryHistoryManager;
+import org.anna.taskManager.tasks.Task;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Просмотры и чтение общей истории из нескольких потоков: история под монитором
+ * против ConcurrentHistoryManager. Три потока добавляют просмотры, один читает историю.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class HistoryContentionBenchmark {
+
+    private static final int TASK_COUNT = 1000;
+
+    public enum HistoryType {
+        SYNCHRONIZED, CONCURRENT
+    }
+
+    @Param({"SYNCHRONIZED", "CONCURRENT"})
+    public HistoryType historyType;
+
+    private HistoryManager historyManager;
+    private Task[] tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        historyManager = historyType == HistoryType.SYNCHRONIZED
+                ? new SynchronizedHistoryManager(new InMemoryHistoryManager())
+                : new ConcurrentHistoryManager(new InMemoryHistoryManager());
+        tasks = new Task[TASK_COUNT];
+        for (int i = 0; i < TASK_COUNT; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание задачи");
+            tasks[i].setId(i);
+        }
+    }
+
+    @Benchmark
+    @Group("views")
+    @GroupThreads(3)
+    public void add() {
+        historyManager.add(tasks[ThreadLocalRandom.current().nextInt(TASK_COUNT)]);
+    }
+
+    @Benchmark
+    @Group("views")
+    @GroupThreads(1)
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    /**
+     * История под монитором, как в ConcurrentTaskManager до появления ConcurrentHistoryManager.
+     */
+    private static class SynchronizedHistoryManager implements HistoryManager {
+
+        private final HistoryManager delegate;
+
+        SynchronizedHistoryManager(HistoryManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized ArrayList<Task> getHistory() {
+            return delegate.getHistory();
+        }
+
+        @Override
+        public synchronized HistoryPage getHistory(long cursor, int limit) {
+            return delegate.getHistory(cursor, limit);
+        }
+
+        @Override
+        public synchronized void add(Task task) {
+            delegate.add(task);
+        }
+
+        @Override
+        public synchronized void remove(long id) {
+            delegate.remove(id);
+        }
+    }
+}
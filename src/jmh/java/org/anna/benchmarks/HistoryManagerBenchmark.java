@@ -0,0 +1,60 @@
+package org.anna.benchmarks;
+
+import org.anna.taskManager.manager.historyManager.HistoryPage;
+import org.anna.taskManager.manager.historyManager.InMemoryHistoryManager;
+import org.anna.taskManager.tasks.Task;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Добавление просмотров и чтение истории для InMemoryHistoryManager.
+ * Просмотры перебирают storeSize разных задач, поэтому при хранилище больше истории почти каждое добавление
+ * вытесняет запись. Размер истории задаётся параметром capacity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class HistoryManagerBenchmark {
+
+    @Param({"5", "1000", "100000"})
+    public int storeSize;
+
+    @Param({"10", "10000"})
+    public int capacity;
+
+    private InMemoryHistoryManager historyManager;
+    private Task[] tasks;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        historyManager = new InMemoryHistoryManager(capacity);
+        tasks = new Task[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание задачи");
+            tasks[i].setId(i);
+            historyManager.add(tasks[i]);
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        cursor = (cursor + 7919) % storeSize;
+        historyManager.add(tasks[cursor]);
+    }
+
+    @Benchmark
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Benchmark
+    public HistoryPage getHistoryPage() {
+        return historyManager.getHistory(-1, 20);
+    }
+}
@@ -0,0 +1,61 @@
+package org.anna.benchmarks;
+
+import com.google.gson.Gson;
+import org.anna.server.HttpTaskServer;
+import org.anna.server.ServerExecutors;
+import org.anna.taskManager.manager.taskManager.ConcurrentTaskManager;
+import org.anna.taskManager.tasks.Task;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность POST /tasks/task при шестнадцати клиентах: обработка в потоке-диспетчере HttpServer
+ * против пула потоков по числу ядер. Менеджер — ConcurrentTaskManager, задачи без времени, поэтому
+ * запросы не конфликтуют между собой по расписанию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class HttpTaskServerBenchmark {
+
+    public enum ExecutorType {
+        DISPATCHER, FIXED_POOL
+    }
+
+    @Param({"DISPATCHER", "FIXED_POOL"})
+    public ExecutorType executorType;
+
+    private HttpTaskServer server;
+    private HttpClient client;
+    private HttpRequest createTask;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new HttpTaskServer(new ConcurrentTaskManager(),
+                executorType == ExecutorType.FIXED_POOL ? ServerExecutors.fixedPool() : null);
+        client = HttpClient.newHttpClient();
+        createTask = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks/task"))
+                .POST(HttpRequest.BodyPublishers.ofString(new Gson().toJson(
+                        new Task("Прогулка с собакой", "Поводок за дверью")))).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public int createTask() throws IOException, InterruptedException {
+        return client.send(createTask, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
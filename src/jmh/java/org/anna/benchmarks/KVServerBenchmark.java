@@ -0,0 +1,113 @@
+package org.anna.benchmarks;
+
+import org.anna.server.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность KVServer при четырёх клиентах: обработка в потоке-диспетчере HttpServer
+ * против пула потоков, хранилище в памяти против хранилища на диске. Каждый клиент пишет свои ключи,
+ * читает общие и увеличивает общий счётчик через compare-and-set с повтором при конфликте.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class KVServerBenchmark {
+
+    private static final int KEY_COUNT = 100;
+
+    public enum ExecutorType {
+        DISPATCHER, FIXED_POOL
+    }
+
+    public enum StoreType {
+        IN_MEMORY, LOG_STRUCTURED
+    }
+
+    @Param({"DISPATCHER", "FIXED_POOL"})
+    public ExecutorType executorType;
+
+    @Param({"IN_MEMORY", "LOG_STRUCTURED"})
+    public StoreType storeType;
+
+    private KVServer server;
+    private Path directory;
+    private final AtomicInteger clientCounter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        KVStore store;
+        if (storeType == StoreType.IN_MEMORY) {
+            store = new InMemoryKVStore();
+        } else {
+            directory = Files.createTempDirectory("kv-benchmark");
+            store = new LogStructuredKVStore(directory, LogStructuredKVStore.FsyncPolicy.NEVER, 0);
+        }
+        server = new KVServer(executorType == ExecutorType.FIXED_POOL ? ServerExecutors.fixedPool(4) : null, store);
+        server.start();
+        KVTaskClient client = new KVTaskClient(String.valueOf(KVServer.PORT));
+        for (int i = 0; i < KEY_COUNT; i++) {
+            client.put("shared/" + i, "{\"id\":" + i + ",\"name\":\"Задача " + i + "\"}");
+        }
+        client.put("counter", "0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        KVTaskClient client;
+        String ownKey;
+        int writes;
+
+        @Setup(Level.Trial)
+        public void setUp(KVServerBenchmark benchmark) throws IOException, InterruptedException {
+            client = new KVTaskClient(String.valueOf(KVServer.PORT));
+            ownKey = "client/" + benchmark.clientCounter.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public void put(Client client) {
+        client.client.put(client.ownKey, "{\"writes\":" + client.writes++ + "}");
+    }
+
+    @Benchmark
+    public String load(Client client) {
+        return client.client.load("shared/" + ThreadLocalRandom.current().nextInt(KEY_COUNT));
+    }
+
+    @Benchmark
+    public long compareAndSetIncrement(Client client) {
+        long version;
+        do {
+            VersionedValue current = client.client.loadVersioned("counter");
+            version = client.client.compareAndSet("counter", current.getVersion(),
+                    String.valueOf(Long.parseLong(current.getValue()) + 1));
+        } while (version == KVStore.CONFLICT);
+        return version;
+    }
+}
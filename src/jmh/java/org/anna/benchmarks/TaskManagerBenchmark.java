@@ -0,0 +1,172 @@
+package org.anna.benchmarks;
+
+import org.anna.server.KVServer;
+import org.anna.taskManager.manager.taskManager.*;
+import org.anna.taskManager.tasks.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность основных операций менеджеров задач на заполненном хранилище.
+ * Хранилище заполняется задачами, эпиками и подзадачами; доля задач со временем задаётся параметром timedShare.
+ * HTTPTaskManager работает с KVServer, запущенным в том же процессе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class TaskManagerBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, Month.JANUARY, 1, 0, 0);
+    private static final int SLOT_MINUTES = 60;
+    private static final int SUBTASKS_PER_EPIC = 10;
+
+    public enum ManagerType {
+        IN_MEMORY, FILE_BACKED, HTTP
+    }
+
+    @Param({"IN_MEMORY", "FILE_BACKED", "HTTP"})
+    public ManagerType managerType;
+
+    @Param({"1000", "10000"})
+    public int storeSize;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double timedShare;
+
+    private KVServer kvServer;
+    private Path file;
+    private TaskManager manager;
+    private long[] taskIds;
+    private int cursor;
+    private int nextSlot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        switch (managerType) {
+            case IN_MEMORY:
+                manager = new InMemoryTaskManager();
+                break;
+            case FILE_BACKED:
+                file = Files.createTempFile("tasks", ".csv");
+                manager = new FileBackedTasksManager(file.toString());
+                break;
+            case HTTP:
+                kvServer = new KVServer();
+                kvServer.start();
+                manager = new HTTPTaskManager(String.valueOf(KVServer.PORT));
+                break;
+        }
+        int epicCount = storeSize / (SUBTASKS_PER_EPIC + 1) / 2;
+        int taskCount = storeSize - epicCount * (SUBTASKS_PER_EPIC + 1);
+        taskIds = new long[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            Task task = newTask(i);
+            manager.createTask(task);
+            taskIds[i] = task.getId();
+        }
+        for (int i = 0; i < epicCount; i++) {
+            Epic epic = new Epic("Эпик " + i, "Описание эпика");
+            manager.createEpic(epic);
+            for (int j = 0; j < SUBTASKS_PER_EPIC; j++) {
+                manager.createSubtask(newSubtask(i * SUBTASKS_PER_EPIC + j), epic.getId());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (manager instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) manager).close();
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        if (kvServer != null) {
+            kvServer.stop();
+        }
+        if (file != null) {
+            for (String suffix : List.of("", ".journal", ".history", ".views", ".tmp", ".views.tmp")) {
+                Files.deleteIfExists(Path.of(file + suffix));
+            }
+        }
+    }
+
+    @Benchmark
+    public void createAndRemoveTask() {
+        Task task = isTimed(nextSlot) ? new Task("Задача", "Описание задачи", SLOT_MINUTES / 2,
+                slot(storeSize * 2 + nextSlot)) : new Task("Задача", "Описание задачи");
+        nextSlot++;
+        manager.createTask(task);
+        manager.removeTaskById(task.getId());
+    }
+
+    @Benchmark
+    public void updateTask() {
+        int index = nextIndex();
+        manager.updateTask(taskIds[index], newTask(index), Status.IN_PROGRESS);
+    }
+
+    /**
+     * Чтение задачи по id. FileBackedTasksManager дописывает просмотр в журнал просмотров,
+     * поэтому сколько бы ни было чтений подряд, снимок хранилища при них не перезаписывается.
+     */
+    @Benchmark
+    public Object getTaskById() {
+        return manager.getTaskById(taskIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public void iteratePrioritizedTasks(Blackhole blackhole) {
+        for (Task task : manager.getPrioritizedTasks()) {
+            blackhole.consume(task);
+        }
+    }
+
+    /**
+     * Поиск пересечений по тому же индексу расписания, что и проверка времени при создании и обновлении задач.
+     */
+    @Benchmark
+    public List<Task> findConflicts() {
+        LocalDateTime start = slot(nextIndex()).plusMinutes(SLOT_MINUTES / 4);
+        return manager.findConflicts(start, start.plusMinutes(SLOT_MINUTES));
+    }
+
+    private Task newTask(int slot) {
+        if (isTimed(slot)) {
+            return new Task("Задача " + slot, "Описание задачи", SLOT_MINUTES / 2, slot(slot));
+        }
+        return new Task("Задача " + slot, "Описание задачи");
+    }
+
+    private Subtask newSubtask(int slot) {
+        if (isTimed(slot)) {
+            return new Subtask("Подзадача " + slot, "Описание подзадачи", SLOT_MINUTES / 2, slot(storeSize + slot));
+        }
+        return new Subtask("Подзадача " + slot, "Описание подзадачи");
+    }
+
+    private boolean isTimed(int slot) {
+        return (slot * 0.618034) % 1 < timedShare;
+    }
+
+    private static LocalDateTime slot(long slot) {
+        return START.plusMinutes(slot * SLOT_MINUTES);
+    }
+
+    private int nextIndex() {
+        cursor = (cursor + 7919) % taskIds.length;
+        return cursor;
+    }
+}
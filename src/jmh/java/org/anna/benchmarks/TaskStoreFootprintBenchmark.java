@@ -0,0 +1,66 @@
+package org.anna.benchmarks;
+
+import org.anna.taskManager.manager.taskManager.CompactTaskManager;
+import org.anna.taskManager.manager.taskManager.InMemoryTaskManager;
+import org.anna.taskManager.manager.taskManager.TaskManager;
+import org.anna.taskManager.tasks.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заполнение хранилища и занимаемая им память: InMemoryTaskManager против CompactTaskManager.
+ * Размер графа объектов менеджера считается через JOL после каждой итерации и печатается в байтах на задачу.
+ * Названия и описания у всех задач общие, поэтому в размер попадают только накладные расходы на хранение.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Djdk.attach.allowAttachSelf", "-Djol.magicFieldOffset=true"})
+public class TaskStoreFootprintBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, Month.JANUARY, 1, 0, 0);
+    private static final int SUBTASKS_PER_EPIC = 10;
+
+    public enum ManagerType {
+        IN_MEMORY, COMPACT
+    }
+
+    @Param({"IN_MEMORY", "COMPACT"})
+    public ManagerType managerType;
+
+    @Param({"100000"})
+    public int storeSize;
+
+    private TaskManager manager;
+
+    @Benchmark
+    public TaskManager fill() {
+        manager = managerType == ManagerType.IN_MEMORY ? new InMemoryTaskManager() : new CompactTaskManager();
+        int epicCount = storeSize / (SUBTASKS_PER_EPIC + 1) / 2;
+        int taskCount = storeSize - epicCount * (SUBTASKS_PER_EPIC + 1);
+        for (int i = 0; i < taskCount; i++) {
+            manager.createTask(new Task("Задача", "Описание задачи", 30, START.plusHours(i)));
+        }
+        for (int i = 0; i < epicCount; i++) {
+            Epic epic = new Epic("Эпик", "Описание эпика");
+            manager.createEpic(epic);
+            for (int j = 0; j < SUBTASKS_PER_EPIC; j++) {
+                manager.createSubtask(new Subtask("Подзадача", "Описание подзадачи", 30,
+                        START.plusHours(taskCount + (long) i * SUBTASKS_PER_EPIC + j)), epic.getId());
+            }
+        }
+        return manager;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printFootprint() {
+        long bytes = GraphLayout.parseInstance(manager).totalSize();
+        System.out.printf("%n%s: %d байт, %.1f байт на задачу%n", managerType, bytes, (double) bytes / storeSize);
+    }
+}
@@ -0,0 +1,142 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.Task;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск, замена и удаление с повторной вставкой по id в хранилище задач: HashMap и TreeMap с ключами Long
+ * против LongHashMap. Выделение памяти на операцию видно с профилировщиком {@code -prof gc}.
+ * <p>
+ * В отличие от остальных бенчмарков, лежит не в {@code org.anna.benchmarks}, а в пакете менеджера:
+ * {@link LongHashMap} — внутреннее хранилище менеджеров, и открывать его ради сравнения реализаций не нужно.
+ * То же хранилище через публичный API менеджеров измеряет {@code org.anna.benchmarks.TaskManagerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class LongMapBenchmark {
+
+    private static final int OPERATIONS = 1024;
+
+    public enum MapType {
+        HASH_MAP, TREE_MAP, LONG_HASH_MAP
+    }
+
+    @Param({"HASH_MAP", "TREE_MAP", "LONG_HASH_MAP"})
+    public MapType mapType;
+
+    @Param({"1000", "100000"})
+    public int storeSize;
+
+    private LongMap<Task> map;
+    private Task[] tasks;
+    private long[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (mapType) {
+            case HASH_MAP:
+                map = new BoxedLongMap<>(new HashMap<>());
+                break;
+            case TREE_MAP:
+                map = new BoxedLongMap<>(new TreeMap<>());
+                break;
+            default:
+                map = new LongHashMap<>();
+        }
+        tasks = new Task[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание задачи");
+            tasks[i].setId(i);
+            map.put(i, tasks[i]);
+        }
+        Random random = new Random(42);
+        ids = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            ids[i] = random.nextInt(storeSize);
+        }
+    }
+
+    private long nextId() {
+        next = (next + 1) & (OPERATIONS - 1);
+        return ids[next];
+    }
+
+    @Benchmark
+    public Task get() {
+        return map.get(nextId());
+    }
+
+    @Benchmark
+    public Task put() {
+        long id = nextId();
+        return map.put(id, tasks[(int) id]);
+    }
+
+    @Benchmark
+    public Task removeAndPut() {
+        long id = nextId();
+        Task task = map.remove(id);
+        map.put(id, task);
+        return task;
+    }
+
+    /**
+     * Хранилище с ключами Long, как в InMemoryTaskManager до появления LongHashMap.
+     */
+    private static class BoxedLongMap<V> implements LongMap<V> {
+
+        private final Map<Long, V> map;
+
+        BoxedLongMap(Map<Long, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public V get(long key) {
+            return map.get(key);
+        }
+
+        @Override
+        public V put(long key, V value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        public V remove(long key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public boolean containsKey(long key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Collection<V> values() {
+            return map.values();
+        }
+
+        @Override
+        public Iterable<V> tailValues(long key) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная запись снимка FileBackedTasksManager, восстановление из него и время до ответа на первый запрос.
+ * <p>
+ * В отличие от остальных бенчмарков, лежит не в {@code org.anna.benchmarks}, а в пакете менеджера:
+ * запись снимка {@link FileBackedTasksManager#save()} пакетная. Снаружи её запускает только сжатие журнала,
+ * момент которого бенчмарк не выбирает, а публичный метод сделал бы запись снимка частью API
+ * и для {@link HTTPTaskManager}, который её переопределяет.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, Month.JANUARY, 1, 0, 0);
+    private static final int SUBTASKS_PER_EPIC = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    public int storeSize;
+
+    private Path file;
+    private FileBackedTasksManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("tasks", ".csv");
+        manager = new FileBackedTasksManager(file.toString());
+        int epicCount = storeSize / (SUBTASKS_PER_EPIC + 1) / 2;
+        int taskCount = storeSize - epicCount * (SUBTASKS_PER_EPIC + 1);
+        for (int i = 0; i < taskCount; i++) {
+            manager.createTask(new Task("Задача " + i, "Описание задачи средней длины для реального хранилища",
+                    30, START.plusHours(i)));
+        }
+        for (int i = 0; i < epicCount; i++) {
+            Epic epic = new Epic("Эпик " + i, "Описание эпика");
+            manager.createEpic(epic);
+            for (int j = 0; j < SUBTASKS_PER_EPIC; j++) {
+                manager.createSubtask(new Subtask("Подзадача " + j, "Описание подзадачи", 30,
+                        START.plusHours(taskCount + (long) i * SUBTASKS_PER_EPIC + j)), epic.getId());
+            }
+        }
+        manager.save();
+        System.out.printf("%nРазмер снимка: %d байт%n", Files.size(file));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (String suffix : List.of("", ".journal", ".history", ".views", ".tmp", ".history.tmp", ".views.tmp")) {
+            Files.deleteIfExists(Path.of(file + suffix));
+        }
+    }
+
+    @Benchmark
+    public void save() {
+        manager.save();
+    }
+
+    @Benchmark
+    public FileBackedTasksManager load() throws IOException {
+        return FileBackedTasksManager.loadFromFile(new File(file.toString()));
+    }
+
+    /**
+     * Время от запуска до ответа на первый запрос: восстановление из снимка и чтение одной задачи.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 5)
+    public Object timeToFirstRequest() throws IOException {
+        return FileBackedTasksManager.loadFromFile(new File(file.toString())).getTaskById(0);
+    }
+}
@@ -1,6 +1,20 @@
 package org.anna;
 
+import org.anna.server.HttpTaskServer;
+import org.anna.server.KVServer;
+import org.anna.server.ServerExecutors;
+
+import java.io.IOException;
+
 public class Main {
 
+    /**
+     * Запускает KVServer и HttpTaskServer на портах по умолчанию.
+     * Алгоритм Нейгла отключается до создания серверов, см. {@link ServerExecutors#disableNagle()}.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ServerExecutors.disableNagle();
+        new KVServer().start();
+        new HttpTaskServer();
+    }
 }
-
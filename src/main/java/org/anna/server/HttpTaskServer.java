@@ -1,8 +1,11 @@
 package org.anna.server;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.*;
 import org.anna.taskManager.manager.Managers;
+import org.anna.taskManager.manager.historyManager.HistoryPage;
+import org.anna.taskManager.manager.taskManager.PriorityCursor;
 import org.anna.taskManager.manager.taskManager.TaskManager;
 import org.anna.taskManager.tasks.*;
 
@@ -11,22 +14,45 @@ import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 public class HttpTaskServer {
 
     private static final int PORT = 8080;
     private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int DEFAULT_PAGE_LIMIT = 100;
     private static final Gson gson = new Gson();
+
     private final HttpServer httpServer;
     private final TaskManager manager;
+    private final ExecutorService executor;
 
     public TaskManager getManager() {
         return manager;
     }
 
     public HttpTaskServer() throws IOException, InterruptedException {
-        manager = Managers.getDefault();
+        this(Managers.getDefault(), null);
+    }
+
+    /**
+     * Создаёт сервер, обрабатывающий запросы на переданном исполнителе.
+     * Если исполнитель многопоточный, менеджер должен быть потокобезопасным, например {@link Managers#getConcurrent()}.
+     *
+     * @param manager Менеджер задач.
+     * @param executor Исполнитель для обработки запросов; при {@code null} запросы обрабатываются
+     *                 в потоке-диспетчере HttpServer. Останавливается вместе с сервером.
+     */
+    public HttpTaskServer(TaskManager manager, ExecutorService executor) throws IOException {
+        this.manager = manager;
+        this.executor = executor;
         httpServer = HttpServer.create(new InetSocketAddress(PORT), 0);
+        httpServer.setExecutor(executor);
         httpServer.createContext("/tasks/", new TasksHandler());
         httpServer.createContext("/tasks/history", new HistoryHandler());
         httpServer.createContext("/tasks/task", new TaskHandler());
@@ -42,11 +68,11 @@ public class HttpTaskServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equals(exchange.getRequestMethod())) {
-                String serialized = gson.toJson(manager.getPrioritizedTasks());
-                exchange.getResponseHeaders().add("Content-Type", "application/json");
-                exchange.sendResponseHeaders(200, 0);
-                try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(serialized.getBytes());
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null && isPageQuery(query)) {
+                    sendPrioritizedPage(exchange, query);
+                } else {
+                    streamJson(exchange, manager.getPrioritizedTasks());
                 }
             } else {
                 exchange.sendResponseHeaders(405, 0);
@@ -62,11 +88,11 @@ public class HttpTaskServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equals(exchange.getRequestMethod())) {
-                String serialized = gson.toJson(manager.getHistoryManager());
-                exchange.getResponseHeaders().add("Content-Type", "application/json");
-                exchange.sendResponseHeaders(200, 0);
-                try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(serialized.getBytes());
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null && isPageQuery(query)) {
+                    sendHistoryPage(exchange, query);
+                } else {
+                    streamJson(exchange, manager.getHistoryManager());
                 }
             } else {
                 exchange.sendResponseHeaders(405, 0);
@@ -84,25 +110,16 @@ public class HttpTaskServer {
             String query = exchange.getRequestURI().getQuery();
             switch (exchange.getRequestMethod()) {
                 case "GET":
-                    String serialized;
                     if (query == null) {
-                        serialized = gson.toJson(manager.getListOfTasks());
-                        exchange.getResponseHeaders().add("Content-Type", "application/json");
-                        exchange.sendResponseHeaders(200, 0);
-                        try (OutputStream os = exchange.getResponseBody()) {
-                            os.write(serialized.getBytes());
-                        }
+                        streamJson(exchange, manager.getListOfTasks());
+                    } else if (isPageQuery(query)) {
+                        sendPage(exchange, query, manager::getTasksPage);
                     } else {
                         String[] params = query.split("=");
                         long taskId = Long.parseLong(params[1]);
-                        if (manager.getListOfTasks().stream()
-                                .anyMatch(Task -> Task.getId() == taskId)) {
-                            serialized = gson.toJson(manager.getTaskById(taskId));
-                            exchange.getResponseHeaders().add("Content-Type", "application/json");
-                            exchange.sendResponseHeaders(200, 0);
-                            try (OutputStream os = exchange.getResponseBody()) {
-                                os.write(serialized.getBytes());
-                            }
+                        Optional<Task> task = manager.getTaskById(taskId);
+                        if (task.isPresent()) {
+                            sendJson(exchange, task.get());
                         } else {
                             exchange.sendResponseHeaders(404, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -128,8 +145,7 @@ public class HttpTaskServer {
                         String status = params[1].split("=")[1];
                         inputStream = exchange.getRequestBody();
                         body = new String(inputStream.readAllBytes(), CHARSET);
-                        if (manager.getListOfTasks().stream()
-                                .anyMatch(Task -> Task.getId() == Long.parseLong(taskId))
+                        if (manager.containsTask(Long.parseLong(taskId))
                                 && Arrays.stream(Status.values()).anyMatch(st -> st.name().equals(status))) {
                             manager.updateTask(Long.parseLong(taskId), gson.fromJson(body, Task.class),
                                     Status.valueOf(status));
@@ -160,8 +176,7 @@ public class HttpTaskServer {
                     } else {
                         String[] params = query.split("=");
                         long taskId = Long.parseLong(params[1]);
-                        if (manager.getListOfTasks().stream()
-                                .anyMatch(Task -> Task.getId() == taskId)) {
+                        if (manager.containsTask(taskId)) {
                             manager.removeTaskById(taskId);
                             exchange.sendResponseHeaders(201, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -191,25 +206,16 @@ public class HttpTaskServer {
             String query = exchange.getRequestURI().getQuery();
             switch (exchange.getRequestMethod()) {
                 case "GET":
-                    String serialized;
                     if (query == null) {
-                        serialized = gson.toJson(manager.getListOfEpics());
-                        exchange.getResponseHeaders().add("Content-Type", "application/json");
-                        exchange.sendResponseHeaders(200, 0);
-                        try (OutputStream os = exchange.getResponseBody()) {
-                            os.write(serialized.getBytes());
-                        }
+                        streamJson(exchange, manager.getListOfEpics());
+                    } else if (isPageQuery(query)) {
+                        sendPage(exchange, query, manager::getEpicsPage);
                     } else {
                         String[] params = query.split("=");
                         long epicId = Long.parseLong(params[1]);
-                        if (manager.getListOfEpics().stream()
-                                .anyMatch(Epic -> Epic.getId() == epicId)) {
-                            serialized = gson.toJson(manager.getEpicById(epicId));
-                            exchange.getResponseHeaders().add("Content-Type", "application/json");
-                            exchange.sendResponseHeaders(200, 0);
-                            try (OutputStream os = exchange.getResponseBody()) {
-                                os.write(serialized.getBytes());
-                            }
+                        Optional<Epic> epic = manager.getEpicById(epicId);
+                        if (epic.isPresent()) {
+                            sendJson(exchange, epic.get());
                         } else {
                             exchange.sendResponseHeaders(404, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -233,8 +239,7 @@ public class HttpTaskServer {
                         long epicId = Long.parseLong(params[1]);
                         inputStream = exchange.getRequestBody();
                         body = new String(inputStream.readAllBytes(), CHARSET);
-                        if (manager.getListOfEpics().stream()
-                                .anyMatch(Epic -> Epic.getId() == epicId)) {
+                        if (manager.containsEpic(epicId)) {
                             manager.updateEpic(epicId, gson.fromJson(body, Epic.class));
                             exchange.sendResponseHeaders(201, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -263,8 +268,7 @@ public class HttpTaskServer {
                     } else {
                         String[] params = query.split("=");
                         long epicId = Long.parseLong(params[1]);
-                        if (manager.getListOfEpics().stream()
-                                .anyMatch(Epic -> Epic.getId() == epicId)) {
+                        if (manager.containsEpic(epicId)) {
                             manager.removeEpicById(epicId);
                             exchange.sendResponseHeaders(201, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -294,25 +298,16 @@ public class HttpTaskServer {
             String query = exchange.getRequestURI().getQuery();
             switch (exchange.getRequestMethod()) {
                 case "GET":
-                    String serialized;
                     if (query == null) {
-                        serialized = gson.toJson(manager.getListOfSubtasks());
-                        exchange.getResponseHeaders().add("Content-Type", "application/json");
-                        exchange.sendResponseHeaders(200, 0);
-                        try (OutputStream os = exchange.getResponseBody()) {
-                            os.write(serialized.getBytes());
-                        }
+                        streamJson(exchange, manager.getListOfSubtasks());
+                    } else if (isPageQuery(query)) {
+                        sendPage(exchange, query, manager::getSubtasksPage);
                     } else {
                         String[] params = query.split("=");
                         long subtaskId = Long.parseLong(params[1]);
-                        if (manager.getListOfSubtasks().stream()
-                                .anyMatch(Subtask -> Subtask.getId() == subtaskId)) {
-                            serialized = gson.toJson(manager.getSubtaskById(subtaskId));
-                            exchange.getResponseHeaders().add("Content-Type", "application/json");
-                            exchange.sendResponseHeaders(200, 0);
-                            try (OutputStream os = exchange.getResponseBody()) {
-                                os.write(serialized.getBytes());
-                            }
+                        Optional<Subtask> subtask = manager.getSubtaskById(subtaskId);
+                        if (subtask.isPresent()) {
+                            sendJson(exchange, subtask.get());
                         } else {
                             exchange.sendResponseHeaders(404, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -324,8 +319,7 @@ public class HttpTaskServer {
                 case "POST":
                     InputStream inputStream = exchange.getRequestBody();
                     String body = new String(inputStream.readAllBytes(), CHARSET);
-                    if (query != null && manager.getListOfEpics().stream()
-                            .anyMatch(Epic -> Epic.getId() == Integer.parseInt(query.split("=")[1]))) {
+                    if (query != null && manager.containsEpic(Integer.parseInt(query.split("=")[1]))) {
                         manager.createSubtask(gson.fromJson(body, Subtask.class),
                                 Integer.parseInt(query.split("=")[1]));
                         exchange.sendResponseHeaders(201, 0);
@@ -346,8 +340,7 @@ public class HttpTaskServer {
                         String status = params[1].split("=")[1];
                         inputStream = exchange.getRequestBody();
                         body = new String(inputStream.readAllBytes(), CHARSET);
-                        if (manager.getListOfSubtasks().stream()
-                                .anyMatch(Subtask -> Subtask.getId() == Long.parseLong(subtaskId))
+                        if (manager.containsSubtask(Long.parseLong(subtaskId))
                                 && Arrays.stream(Status.values()).anyMatch(st -> st.name().equals(status))) {
                             manager.updateSubtask(Long.parseLong(subtaskId), gson.fromJson(body, Subtask.class),
                                     Status.valueOf(status));
@@ -379,8 +372,7 @@ public class HttpTaskServer {
                     } else {
                         String[] params = queryId.split("=");
                         long subtaskId = Long.parseLong(params[1]);
-                        if (manager.getListOfSubtasks().stream()
-                                .anyMatch(Subtask -> Subtask.getId() == subtaskId)) {
+                        if (manager.containsSubtask(subtaskId)) {
                             manager.removeSubtaskById(subtaskId);
                             exchange.sendResponseHeaders(201, 0);
                             try (OutputStream os = exchange.getResponseBody()) {
@@ -409,15 +401,8 @@ public class HttpTaskServer {
         public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equals(exchange.getRequestMethod())) {
                 String query = exchange.getRequestURI().getQuery();
-                if (query != null && manager.getListOfEpics().stream()
-                        .anyMatch(Epic -> Epic.getId() == Integer.parseInt(query.split("=")[1]))) {
-                    String serialized =
-                            gson.toJson(manager.getAllEpicSubtasks(Integer.parseInt(query.split("=")[1])));
-                    exchange.getResponseHeaders().add("Content-Type", "application/json");
-                    exchange.sendResponseHeaders(200, 0);
-                    try (OutputStream os = exchange.getResponseBody()) {
-                        os.write(serialized.getBytes());
-                    }
+                if (query != null && manager.containsEpic(Integer.parseInt(query.split("=")[1]))) {
+                    streamJson(exchange, manager.getAllEpicSubtasks(Integer.parseInt(query.split("=")[1])));
                 } else {
                     exchange.sendResponseHeaders(404, 0);
                     try (OutputStream os = exchange.getResponseBody()) {
@@ -433,7 +418,205 @@ public class HttpTaskServer {
         }
     }
 
+    /**
+     * Источник страниц для {@link #sendPage}: возвращает до {@code limit} элементов после элемента с id {@code cursor}.
+     */
+    private interface PageSource {
+        List<? extends Task> getPage(long cursor, int limit);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        for (String param : query.split("&")) {
+            String[] pair = param.split("=", 2);
+            params.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        return params;
+    }
+
+    private static boolean isPageQuery(String query) {
+        Map<String, String> params = parseQuery(query);
+        return params.containsKey("limit") || params.containsKey("cursor");
+    }
+
+    /**
+     * Отправляет страницу списка по параметрам запроса {@code limit} (по умолчанию {@value #DEFAULT_PAGE_LIMIT})
+     * и {@code cursor} (id последнего элемента предыдущей страницы). Если страница заполнена целиком,
+     * id её последнего элемента передаётся в заголовке Next-Cursor.
+     */
+    private static void sendPage(HttpExchange exchange, String query, PageSource source) throws IOException {
+        Map<String, String> params = parseQuery(query);
+        List<? extends Task> page;
+        try {
+            long cursor = Long.parseLong(params.getOrDefault("cursor", "-1"));
+            int limit = parseLimit(params);
+            page = source.getPage(cursor, limit);
+            if (page.size() == limit) {
+                exchange.getResponseHeaders().add("Next-Cursor", String.valueOf(page.get(limit - 1).getId()));
+            }
+        } catch (IllegalArgumentException e) {
+            sendBadPageRequest(exchange);
+            return;
+        }
+        streamJson(exchange, page);
+    }
+
+    /**
+     * То же, что {@link #sendPage}, но для списка приоритетов: курсор — это {@link PriorityCursor}
+     * последней задачи страницы, т.е. её время начала и id, поэтому он остаётся действительным,
+     * даже если задачу удалили или перенесли на другое время.
+     */
+    private void sendPrioritizedPage(HttpExchange exchange, String query) throws IOException {
+        Map<String, String> params = parseQuery(query);
+        List<Task> page;
+        try {
+            String cursor = params.get("cursor");
+            int limit = parseLimit(params);
+            page = manager.getPrioritizedTasksPage(cursor == null ? null : PriorityCursor.parse(cursor), limit);
+            if (page.size() == limit) {
+                exchange.getResponseHeaders().add("Next-Cursor", PriorityCursor.after(page.get(limit - 1)).toString());
+            }
+        } catch (IllegalArgumentException e) {
+            sendBadPageRequest(exchange);
+            return;
+        }
+        streamJson(exchange, page);
+    }
+
+    /**
+     * То же, что {@link #sendPage}, но для истории просмотров: курсор — это номер последнего просмотра страницы
+     * из {@link HistoryPage#getCursor()}, поэтому удаление или повторный просмотр задач между запросами
+     * не повторяет и не обрывает страницы.
+     */
+    private void sendHistoryPage(HttpExchange exchange, String query) throws IOException {
+        Map<String, String> params = parseQuery(query);
+        HistoryPage page;
+        try {
+            long cursor = Long.parseLong(params.getOrDefault("cursor", "-1"));
+            int limit = parseLimit(params);
+            page = manager.getHistoryPage(cursor, limit);
+            if (page.getTasks().size() == limit) {
+                exchange.getResponseHeaders().add("Next-Cursor", String.valueOf(page.getCursor()));
+            }
+        } catch (IllegalArgumentException e) {
+            sendBadPageRequest(exchange);
+            return;
+        }
+        streamJson(exchange, page.getTasks());
+    }
+
+    private static int parseLimit(Map<String, String> params) {
+        int limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_LIMIT)));
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным: " + limit);
+        }
+        return limit;
+    }
+
+    private static void sendBadPageRequest(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(400, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write("Измените параметры запроса.".getBytes());
+        }
+    }
+
+    /**
+     * Отправляет найденную задачу в JSON в прежнем формате ответа: так, как Gson сериализует {@link Optional},
+     * т.е. {@code {"value": {...}}}.
+     * Задача сериализуется до отправки статуса, поэтому ошибка сериализации не уходит клиенту
+     * ответом 200 с обрезанным телом, а длина ответа известна заранее.
+     */
+    private static void sendJson(HttpExchange exchange, Task task) throws IOException {
+        JsonObject value = new JsonObject();
+        value.add("value", gson.toJsonTree(task));
+        byte[] body = gson.toJson(value).getBytes(CHARSET);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * Пишет список задач в JSON прямо в тело ответа, без промежуточной строки и массива байт.
+     * Размер ответа заранее не известен, поэтому он передаётся частями; запись в поток
+     * буферизуется кодировщиком OutputStreamWriter, так что части получаются по несколько килобайт.
+     * Статус 200 отправляется только вместе с первой готовой частью: если сериализация завершится ошибкой
+     * раньше, клиент получит ответ 500. Если ошибка случится позже, соединение закрывается
+     * без завершающей части, и клиент видит оборванный ответ, а не полный с кодом 200.
+     */
+    private static void streamJson(HttpExchange exchange, Collection<? extends Task> tasks) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        DeferredResponseBody body = new DeferredResponseBody(exchange);
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(body, CHARSET));
+        try {
+            gson.toJson(tasks, tasks.getClass(), writer);
+            writer.flush();
+        } catch (RuntimeException e) {
+            if (body.isStarted()) {
+                throw e;
+            }
+            exchange.getResponseHeaders().remove("Content-Type");
+            exchange.sendResponseHeaders(500, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write("Не удалось сформировать ответ.".getBytes(CHARSET));
+            }
+            return;
+        }
+        writer.close();
+    }
+
+    /**
+     * Тело ответа, которое отправляет статус 200 и заголовки при первой записи, а не при создании.
+     */
+    private static final class DeferredResponseBody extends OutputStream {
+
+        private final HttpExchange exchange;
+        private OutputStream body;
+
+        DeferredResponseBody(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean isStarted() {
+            return body != null;
+        }
+
+        private OutputStream body() throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(200, 0);
+                body = exchange.getResponseBody();
+            }
+            return body;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            body().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            body().write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (body != null) {
+                body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            body().close();
+        }
+    }
+
     public void stop() {
         httpServer.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 }
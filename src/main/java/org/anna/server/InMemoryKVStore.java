@@ -0,0 +1,108 @@
+package org.anna.server;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище в памяти: данные теряются при остановке сервера.
+ * <p>
+ * Значения лежат в ConcurrentHashMap, поэтому чтение и запись разных ключей не мешают друг другу.
+ * Упорядоченный индекс ключей нужен только для запросов по префиксу и меняется внутри
+ * {@link ConcurrentHashMap#compute}, то есть атомарно с записью ключа.
+ */
+public class InMemoryKVStore implements KVStore {
+
+    private final ConcurrentHashMap<String, VersionedValue> data = new ConcurrentHashMap<>();
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    @Override
+    public String get(String key) {
+        VersionedValue value = data.get(key);
+        return value == null ? null : value.getValue();
+    }
+
+    @Override
+    public VersionedValue getVersioned(String key) {
+        return data.get(key);
+    }
+
+    @Override
+    public long put(String key, String value) {
+        return data.compute(key, (k, current) -> {
+            if (current == null) {
+                keys.add(k);
+            }
+            return new VersionedValue(value, lastVersion.incrementAndGet());
+        }).getVersion();
+    }
+
+    @Override
+    public long compareAndSet(String key, long expectedVersion, String value) {
+        long[] result = {CONFLICT};
+        data.compute(key, (k, current) -> {
+            long currentVersion = current == null ? NO_VERSION : current.getVersion();
+            if (currentVersion != expectedVersion) {
+                return current;
+            }
+            if (current == null) {
+                keys.add(k);
+            }
+            result[0] = lastVersion.incrementAndGet();
+            return new VersionedValue(value, result[0]);
+        });
+        return result[0];
+    }
+
+    @Override
+    public void remove(String key) {
+        data.computeIfPresent(key, (k, current) -> {
+            keys.remove(k);
+            return null;
+        });
+    }
+
+    @Override
+    public void putAll(Map<String, String> values) {
+        values.forEach((key, value) -> {
+            if (value == null) {
+                remove(key);
+            } else {
+                put(key, value);
+            }
+        });
+    }
+
+    @Override
+    public SortedMap<String, String> range(String prefix) {
+        SortedMap<String, String> values = new TreeMap<>();
+        for (String key : subSet(prefix)) {
+            VersionedValue value = data.get(key);
+            if (value != null) {
+                values.put(key, value.getValue());
+            }
+        }
+        return Collections.unmodifiableSortedMap(values);
+    }
+
+    @Override
+    public void removeRange(String prefix) {
+        for (String key : subSet(prefix)) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private NavigableSet<String> subSet(String prefix) {
+        return keys.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+}
@@ -1,23 +1,51 @@
 package org.anna.server;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class KVServer {
     public static final int PORT = 8078;
     private final String API_TOKEN;
     private final HttpServer server;
-    private final Map<String, String> data = new HashMap<>();
+    private static final Gson gson = new Gson();
+    private static final Type BATCH_TYPE = new TypeToken<HashMap<String, String>>() {}.getType();
+    private final KVStore data;
+    private final ExecutorService executor;
 
     public KVServer() throws IOException {
+        this(null);
+    }
+
+    /**
+     * @param executor Исполнитель для обработки запросов; при {@code null} запросы обрабатываются
+     *                 в потоке-диспетчере HttpServer. Останавливается вместе с сервером.
+     */
+    public KVServer(ExecutorService executor) throws IOException {
+        this(executor, new InMemoryKVStore());
+    }
+
+    /**
+     * @param executor Исполнитель для обработки запросов, см. {@link #KVServer(ExecutorService)}.
+     * @param store    Хранилище данных, например {@link LogStructuredKVStore} для хранения на диске.
+     *                 Закрывается вместе с сервером.
+     */
+    public KVServer(ExecutorService executor, KVStore store) throws IOException {
         API_TOKEN = generateApiKey();
+        this.executor = executor;
+        this.data = store;
         server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        server.setExecutor(executor);
 
         server.createContext("/register", (h) -> {
             try {
@@ -51,7 +79,24 @@ public class KVServer {
                             h.sendResponseHeaders(400, 0);
                             return;
                         }
-                        data.put(key, value);
+                        // с If-Match значение записывается, только если версия ключа не сменилась
+                        String ifMatch = h.getRequestHeaders().getFirst("If-Match");
+                        long version;
+                        if (ifMatch == null) {
+                            version = data.put(key, value);
+                        } else {
+                            long expectedVersion = parseVersion(ifMatch);
+                            if (expectedVersion < KVStore.NO_VERSION) {
+                                h.sendResponseHeaders(400, 0);
+                                return;
+                            }
+                            version = data.compareAndSet(key, expectedVersion, value);
+                            if (version == KVStore.CONFLICT) {
+                                h.sendResponseHeaders(412, 0);
+                                return;
+                            }
+                        }
+                        h.getResponseHeaders().set("ETag", formatVersion(version));
                         h.sendResponseHeaders(200, 0);
                         break;
                     default:
@@ -74,9 +119,10 @@ public class KVServer {
                             h.sendResponseHeaders(400, 0);
                             return;
                         }
-                        if (data.containsKey(key)) {
-                            sendText(h, data.get(key));
-                            h.sendResponseHeaders(200, 0);
+                        VersionedValue value = data.getVersioned(key);
+                        if (value != null) {
+                            h.getResponseHeaders().set("ETag", formatVersion(value.getVersion()));
+                            sendText(h, value.getValue());
                         } else {
                             h.sendResponseHeaders(404, 0);
                         }
@@ -88,6 +134,59 @@ public class KVServer {
                 h.close();
             }
         });
+        server.createContext("/delete", (h) -> {
+            try {
+                if (!hasAuth(h)) {
+                    h.sendResponseHeaders(403, 0);
+                    return;
+                }
+                switch (h.getRequestMethod()) {
+                    case "DELETE":
+                        String key = h.getRequestURI().getPath().substring("/delete/".length());
+                        if (key.isEmpty()) {
+                            h.sendResponseHeaders(400, 0);
+                            return;
+                        }
+                        data.remove(key);
+                        h.sendResponseHeaders(200, 0);
+                        break;
+                    default:
+                        h.sendResponseHeaders(405, 0);
+                }
+            } finally {
+                h.close();
+            }
+        });
+        server.createContext("/batch/save", this::handleBatchSave);
+        server.createContext("/batch/load", this::handleBatchLoad);
+        // GET возвращает JSON-объект со всеми ключами, начинающимися с префикса, DELETE удаляет их (префикс не пуст)
+        server.createContext("/range", (h) -> {
+            try {
+                if (!hasAuth(h)) {
+                    h.sendResponseHeaders(403, 0);
+                    return;
+                }
+                String prefix = h.getRequestURI().getPath().substring("/range/".length());
+                switch (h.getRequestMethod()) {
+                    case "GET":
+                        sendText(h, gson.toJson(data.range(prefix)));
+                        break;
+                    case "DELETE":
+                        // пустой префикс совпадает со всеми ключами, а очищать всё хранилище одним запросом нельзя
+                        if (prefix.isEmpty()) {
+                            h.sendResponseHeaders(400, 0);
+                            return;
+                        }
+                        data.removeRange(prefix);
+                        h.sendResponseHeaders(200, 0);
+                        break;
+                    default:
+                        h.sendResponseHeaders(405, 0);
+                }
+            } finally {
+                h.close();
+            }
+        });
     }
 
     public void start() {
@@ -96,6 +195,109 @@ public class KVServer {
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
+        try {
+            data.close();
+        } catch (IOException e) {
+            System.out.println("Не удалось закрыть хранилище: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Принимает JSON-объект с парами ключ-значение и сохраняет их все за один запрос.
+     * Значение {@code null} удаляет ключ. Пары применяются по одной, как описано в {@link KVStore#putAll(Map)}.
+     */
+    private void handleBatchSave(HttpExchange h) throws IOException {
+        try {
+            if (!hasAuth(h)) {
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if (!"POST".equals(h.getRequestMethod())) {
+                h.sendResponseHeaders(405, 0);
+                return;
+            }
+            Map<String, String> values;
+            try {
+                values = gson.fromJson(readText(h), BATCH_TYPE);
+            } catch (JsonParseException e) {
+                values = null;
+            }
+            if (values == null || values.isEmpty() || values.keySet().stream().anyMatch(String::isEmpty)
+                    || values.values().stream().anyMatch(value -> value != null && value.isEmpty())) {
+                h.sendResponseHeaders(400, 0);
+                return;
+            }
+            data.putAll(values);
+            h.sendResponseHeaders(200, 0);
+        } finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Принимает JSON-массив ключей и возвращает JSON-объект с найденными значениями.
+     * Ключ, оканчивающийся на {@code *}, означает все ключи с таким префиксом.
+     */
+    private void handleBatchLoad(HttpExchange h) throws IOException {
+        try {
+            if (!hasAuth(h)) {
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if (!"POST".equals(h.getRequestMethod())) {
+                h.sendResponseHeaders(405, 0);
+                return;
+            }
+            String[] keys;
+            try {
+                keys = gson.fromJson(readText(h), String[].class);
+            } catch (JsonParseException e) {
+                keys = null;
+            }
+            if (keys == null) {
+                h.sendResponseHeaders(400, 0);
+                return;
+            }
+            Map<String, String> values = new HashMap<>();
+            for (String key : keys) {
+                if (key.endsWith("*")) {
+                    values.putAll(data.range(key.substring(0, key.length() - 1)));
+                } else {
+                    String value = data.get(key);
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                }
+            }
+            sendText(h, gson.toJson(values));
+        } finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Версия ключа в заголовках ETag и If-Match: число в кавычках, {@code "0"} — ключа нет.
+     */
+    static String formatVersion(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return версия или {@link KVStore#CONFLICT}, если заголовок не является версией.
+     */
+    static long parseVersion(String etag) {
+        String version = etag.trim();
+        if (version.length() > 1 && version.startsWith("\"") && version.endsWith("\"")) {
+            version = version.substring(1, version.length() - 1);
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            return KVStore.CONFLICT;
+        }
     }
 
     private String generateApiKey() {
@@ -0,0 +1,72 @@
+package org.anna.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Хранилище пар ключ-значение, с которым работает {@link KVServer}. Методы можно вызывать из разных потоков.
+ * <p>
+ * У каждого ключа есть версия: номер последней записи из общей для хранилища возрастающей последовательности.
+ * Обычная запись побеждает последней, {@link #compareAndSet} записывает, только если версия не сменилась.
+ */
+public interface KVStore extends Closeable {
+
+    /**
+     * Версия отсутствующего ключа.
+     */
+    long NO_VERSION = 0;
+    /**
+     * Результат {@link #compareAndSet}, если версия ключа не совпала с ожидаемой.
+     */
+    long CONFLICT = -1;
+
+    /**
+     * @return значение или {@code null}, если ключа нет.
+     */
+    default String get(String key) {
+        VersionedValue value = getVersioned(key);
+        return value == null ? null : value.getValue();
+    }
+
+    /**
+     * @return значение с версией или {@code null}, если ключа нет.
+     */
+    VersionedValue getVersioned(String key);
+
+    /**
+     * @return новая версия ключа.
+     */
+    long put(String key, String value);
+
+    /**
+     * Записывает значение, только если текущая версия ключа равна ожидаемой.
+     *
+     * @param expectedVersion Ожидаемая версия; {@link #NO_VERSION} — ключа не должно быть.
+     * @return новая версия ключа или {@link #CONFLICT}, если версия не совпала.
+     */
+    long compareAndSet(String key, long expectedVersion, String value);
+
+    void remove(String key);
+
+    /**
+     * Сохраняет пары за один вызов. Значение {@code null} удаляет ключ.
+     * Атомарна запись каждой пары, но не всего набора: чтение из другого потока
+     * или падение посреди вызова может застать только часть пар.
+     */
+    void putAll(Map<String, String> values);
+
+    /**
+     * @return пары с ключами, начинающимися с префикса, в порядке ключей; изменять результат нельзя.
+     */
+    SortedMap<String, String> range(String prefix);
+
+    /**
+     * Удаляет все ключи, начинающиеся с префикса.
+     */
+    void removeRange(String prefix);
+
+    @Override
+    void close() throws IOException;
+}
@@ -1,19 +1,53 @@
 package org.anna.server;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 public class KVTaskClient {
 
+    private static final Gson gson = new GsonBuilder().serializeNulls().create();
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    private static final int MAX_RETRIES = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 50;
     private final String API_TOKEN;
     private final String serverPort;
     private final HttpClient client;
 
+    // асинхронные запросы сверх лимита ждут в очереди, а не блокируют вызывающий поток
+    private final Semaphore inFlight;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private volatile BiConsumer<String, Long> latencyListener = (path, nanos) -> {};
+
     public KVTaskClient(String serverPort) throws IOException, InterruptedException {
+        this(serverPort, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param serverPort Порт KVServer.
+     * @param maxInFlight Максимальное число одновременно выполняемых асинхронных запросов.
+     */
+    public KVTaskClient(String serverPort, int maxInFlight) throws IOException, InterruptedException {
         this.serverPort = serverPort;
+        inFlight = new Semaphore(maxInFlight);
         client = HttpClient.newHttpClient();
         URI url = URI.create("http://localhost:" + serverPort + "/register");
         HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
@@ -45,4 +79,256 @@ public class KVTaskClient {
         }
         return response.body();
     }
+
+    /**
+     * @return Значение с версией; {@code null}, если ключа нет или запрос не удался.
+     */
+    public VersionedValue loadVersioned(String key) {
+        URI url = URI.create("http://localhost:" + serverPort + "/load/" + key + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                return new VersionedValue(response.body(), responseVersion(response));
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Во время выполнения запроса возникла ошибка. " +
+                    "Проверьте, пожалуйста, URL-адрес и повторите попытку.");
+        }
+        return null;
+    }
+
+    /**
+     * Сохраняет значение, только если версия ключа на сервере равна ожидаемой. Так несколько
+     * HTTPTaskManager могут менять один ключ без потери чужих изменений: при конфликте значение
+     * загружается заново через {@link #loadVersioned(String)} и запись повторяется.
+     *
+     * @param expectedVersion Версия из {@link #loadVersioned(String)}; {@link KVStore#NO_VERSION} —
+     *                        ключа не должно быть.
+     * @return Новая версия ключа или {@link KVStore#CONFLICT}, если версия сменилась.
+     * @throws UncheckedIOException Если запрос не удался или сервер ответил кодом, отличным от 200 и 412:
+     *                              это не конфликт, и повтор с новой версией его не исправит.
+     */
+    public long compareAndSet(String key, long expectedVersion, String json) {
+        URI url = URI.create("http://localhost:" + serverPort + "/save/" + key + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .header("If-Match", KVServer.formatVersion(expectedVersion))
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+        HttpResponse<String> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Запрос " + url.getPath() + " прерван"));
+        }
+        if (response.statusCode() == 200) {
+            return responseVersion(response);
+        }
+        if (response.statusCode() == 412) {
+            return KVStore.CONFLICT;
+        }
+        throw new UncheckedIOException(new IOException("KVServer вернул код " + response.statusCode()
+                + " для запроса " + url.getPath()));
+    }
+
+    public void delete(String key) {
+        URI url = URI.create("http://localhost:" + serverPort + "/delete/" + key + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url).DELETE().build();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Во время выполнения запроса возникла ошибка. " +
+                    "Проверьте, пожалуйста, URL-адрес и повторите попытку.");
+        }
+    }
+
+    /**
+     * Загружает за один запрос все значения, ключи которых начинаются с префикса.
+     *
+     * @param prefix Префикс ключей, например {@code task/}.
+     * @return Значения по ключам; пустая коллекция, если таких ключей нет или запрос не удался.
+     */
+    public Map<String, String> loadRange(String prefix) {
+        URI url = URI.create("http://localhost:" + serverPort + "/range/" + prefix + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                return gson.fromJson(response.body(), new TypeToken<HashMap<String, String>>() {}.getType());
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Во время выполнения запроса возникла ошибка. " +
+                    "Проверьте, пожалуйста, URL-адрес и повторите попытку.");
+        }
+        return new HashMap<>();
+    }
+
+    public void deleteRange(String prefix) {
+        URI url = URI.create("http://localhost:" + serverPort + "/range/" + prefix + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url).DELETE().build();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Во время выполнения запроса возникла ошибка. " +
+                    "Проверьте, пожалуйста, URL-адрес и повторите попытку.");
+        }
+    }
+
+    /**
+     * Сохраняет несколько значений за один запрос.
+     *
+     * @param values Значения по ключам; значение {@code null} удаляет ключ.
+     */
+    public void putAll(Map<String, String> values) {
+        URI url = URI.create("http://localhost:" + serverPort + "/batch/save?API_TOKEN=" + API_TOKEN);
+        final HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(gson.toJson(values));
+        HttpRequest request = HttpRequest.newBuilder().uri(url).POST(body).build();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Во время выполнения запроса возникла ошибка. " +
+                    "Проверьте, пожалуйста, URL-адрес и повторите попытку.");
+        }
+    }
+
+    /**
+     * Загружает несколько значений за один запрос.
+     *
+     * @param keys Ключи; ключ, оканчивающийся на {@code *}, загружает все ключи с таким префиксом.
+     * @return Найденные значения по ключам; пустая коллекция, если запрос не удался.
+     */
+    public Map<String, String> loadAll(Collection<String> keys) {
+        URI url = URI.create("http://localhost:" + serverPort + "/batch/load?API_TOKEN=" + API_TOKEN);
+        final HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(gson.toJson(keys));
+        HttpRequest request = HttpRequest.newBuilder().uri(url).POST(body).build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                return gson.fromJson(response.body(), new TypeToken<HashMap<String, String>>() {}.getType());
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Во время выполнения запроса возникла ошибка. " +
+                    "Проверьте, пожалуйста, URL-адрес и повторите попытку.");
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Устанавливает получателя времени выполнения асинхронных запросов.
+     *
+     * @param latencyListener Получает путь запроса и время выполнения каждой попытки в наносекундах.
+     */
+    public void setLatencyListener(BiConsumer<String, Long> latencyListener) {
+        this.latencyListener = latencyListener;
+    }
+
+    public CompletableFuture<Void> putAsync(String key, String json) {
+        URI url = URI.create("http://localhost:" + serverPort + "/save/" + key + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+        return sendAsync(request).thenApply(response -> null);
+    }
+
+    /**
+     * @return Значение по ключу; пустая строка, если ключа нет.
+     */
+    public CompletableFuture<String> loadAsync(String key) {
+        URI url = URI.create("http://localhost:" + serverPort + "/load/" + key + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        return sendAsync(request).thenApply(response -> response.statusCode() == 404 ? "" : response.body());
+    }
+
+    /**
+     * @see #putAll(Map)
+     */
+    public CompletableFuture<Void> putAllAsync(Map<String, String> values) {
+        URI url = URI.create("http://localhost:" + serverPort + "/batch/save?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(values))).build();
+        return sendAsync(request).thenApply(response -> null);
+    }
+
+    /**
+     * Удаляет все ключи с префиксом. В отличие от {@link #deleteRange(String)}, ошибка запроса
+     * или ответ с кодом, отличным от 200, завершают результат с ошибкой.
+     */
+    public CompletableFuture<Void> deleteRangeAsync(String prefix) {
+        URI url = URI.create("http://localhost:" + serverPort + "/range/" + prefix + "?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url).DELETE().build();
+        return sendAsync(request).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new CompletionException(new IOException("KVServer вернул код " + response.statusCode()
+                        + " для запроса " + request.uri().getPath()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @see #loadAll(Collection)
+     */
+    public CompletableFuture<Map<String, String>> loadAllAsync(Collection<String> keys) {
+        URI url = URI.create("http://localhost:" + serverPort + "/batch/load?API_TOKEN=" + API_TOKEN);
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(keys))).build();
+        return sendAsync(request).thenApply(response ->
+                gson.fromJson(response.body(), new TypeToken<HashMap<String, String>>() {}.getType()));
+    }
+
+    private static long responseVersion(HttpResponse<String> response) {
+        return response.headers().firstValue("ETag").map(KVServer::parseVersion).orElse(KVStore.NO_VERSION);
+    }
+
+    /**
+     * Отправляет запрос без блокировки, соблюдая лимит одновременных запросов.
+     * Сетевые ошибки и ответы 5xx повторяются с экспоненциальной задержкой,
+     * остальные коды, кроме 200 и 404, завершают результат с ошибкой.
+     */
+    private CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        waiting.add(() -> attempt(request, 0, result));
+        startWaiting();
+        return result;
+    }
+
+    private void startWaiting() {
+        while (!waiting.isEmpty() && inFlight.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+
+    private void attempt(HttpRequest request, int attemptNumber, CompletableFuture<HttpResponse<String>> result) {
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            try {
+                latencyListener.accept(request.uri().getPath(), System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                // ошибка получателя не должна оставить результат незавершённым
+                System.out.println("Получатель времени запросов завершился с ошибкой: " + e);
+            }
+            boolean failed = error != null || response.statusCode() >= 500;
+            if (failed && attemptNumber < MAX_RETRIES) {
+                CompletableFuture.delayedExecutor(INITIAL_BACKOFF_MILLIS << attemptNumber, TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(request, attemptNumber + 1, result));
+                return;
+            }
+            inFlight.release();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (response.statusCode() != 200 && response.statusCode() != 404) {
+                result.completeExceptionally(new IOException("KVServer вернул код " + response.statusCode()
+                        + " для запроса " + request.uri().getPath()));
+            } else {
+                result.complete(response);
+            }
+            startWaiting();
+        });
+    }
 }
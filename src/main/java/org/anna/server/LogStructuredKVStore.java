@@ -0,0 +1,631 @@
+package org.anna.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Хранилище на диске в духе Bitcask: записи только дописываются в конец сегментов, а в памяти
+ * хранится каталог ключей с положением последнего значения каждого ключа. Чтение — один позиционный
+ * read из файла сегмента, запись — одно добавление в активный сегмент.
+ * <p>
+ * Сегмент: заголовок (магическое число, версия формата, номер, ниже которого сегменты заменены этим,
+ * последняя выданная версия ключа) и записи. Запись: CRC32, длина ключа, длина значения (-1 у удаления),
+ * версия ключа, ключ и значение в UTF-8. Последняя версия в заголовке нужна, чтобы версии не повторялись
+ * после перезапуска, даже если уплотнение удалило все записи с ними.
+ * Активный сегмент сменяется новым по достижении заданного размера.
+ * <p>
+ * При запуске сегменты читаются по порядку номеров, и каталог ключей восстанавливается; запись с неверной
+ * контрольной суммой или оборванная при падении завершает чтение сегмента. Запись всегда идёт в новый сегмент.
+ * <p>
+ * Уплотнение выполняется в фоне, когда мёртвых байт больше порога и больше, чем живых: живые значения
+ * всех неактивных сегментов переписываются во временный файл, который атомарно переименовывается
+ * в старший из них, после чего остальные удаляются. Заголовок результата помечает младшие сегменты
+ * как заменённые, поэтому падение между переименованием и удалением не возвращает удалённые ключи.
+ */
+public class LogStructuredKVStore implements KVStore {
+
+    /**
+     * Когда данные сбрасываются на диск вызовом fsync.
+     */
+    public enum FsyncPolicy {
+        /**
+         * После каждой записи или пакета: подтверждённая запись переживает отключение питания.
+         */
+        ALWAYS,
+        /**
+         * Раз в интервал в фоновом потоке: при отключении питания теряются записи за последний интервал.
+         */
+        INTERVAL,
+        /**
+         * Без fsync: записи переживают падение процесса, но не отключение питания.
+         */
+        NEVER
+    }
+
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L << 20;
+    public static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 4L << 20;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int SEGMENT_MAGIC = 0x4B56534C;
+    private static final short VERSION = 2;
+    private static final int SEGMENT_HEADER_BYTES = Integer.BYTES + Short.BYTES + 2 * Long.BYTES;
+    private static final int RECORD_HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int TOMBSTONE = -1;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long maxSegmentBytes;
+    private final long compactionThresholdBytes;
+    private final NavigableMap<String, Location> keydir = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    // Чтение идёт под блокировкой чтения, закрытие сегментов после уплотнения — под блокировкой записи
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService background;
+    private volatile Segment active;
+    private volatile boolean dirty;
+    // Последняя выданная версия ключа; меняется под writeLock
+    private long lastVersion;
+
+    public LogStructuredKVStore(Path directory) throws IOException {
+        this(directory, FsyncPolicy.INTERVAL, DEFAULT_FSYNC_INTERVAL_MILLIS);
+    }
+
+    public LogStructuredKVStore(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis)
+            throws IOException {
+        this(directory, fsyncPolicy, fsyncIntervalMillis, DEFAULT_MAX_SEGMENT_BYTES,
+                DEFAULT_COMPACTION_THRESHOLD_BYTES);
+    }
+
+    /**
+     * @param directory                Каталог сегментов; создаётся, если его нет, иначе данные восстанавливаются.
+     * @param fsyncPolicy              Когда сбрасывать записи на диск.
+     * @param fsyncIntervalMillis      Интервал fsync для {@link FsyncPolicy#INTERVAL}.
+     * @param maxSegmentBytes          Размер, после которого активный сегмент сменяется новым.
+     * @param compactionThresholdBytes Сколько мёртвых байт должно накопиться для уплотнения в фоне.
+     */
+    public LogStructuredKVStore(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                                long maxSegmentBytes, long compactionThresholdBytes) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+        recover();
+        background = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "kv-store-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::syncActive, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public VersionedValue getVersioned(String key) {
+        segmentsLock.readLock().lock();
+        try {
+            Location location = keydir.get(key);
+            return location == null ? null
+                    : new VersionedValue(new String(read(location), StandardCharsets.UTF_8), location.version);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long put(String key, String value) {
+        long version;
+        writeLock.lock();
+        try {
+            version = write(Collections.singletonMap(key, value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompactionIfNeeded();
+        return version;
+    }
+
+    @Override
+    public long compareAndSet(String key, long expectedVersion, String value) {
+        long version;
+        writeLock.lock();
+        try {
+            Location current = keydir.get(key);
+            if ((current == null ? NO_VERSION : current.version) != expectedVersion) {
+                return CONFLICT;
+            }
+            version = write(Collections.singletonMap(key, value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompactionIfNeeded();
+        return version;
+    }
+
+    @Override
+    public void remove(String key) {
+        putAll(Collections.singletonMap(key, null));
+    }
+
+    @Override
+    public void putAll(Map<String, String> values) {
+        writeLock.lock();
+        try {
+            write(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override
+    public SortedMap<String, String> range(String prefix) {
+        SortedMap<String, String> values = new TreeMap<>();
+        segmentsLock.readLock().lock();
+        try {
+            for (Map.Entry<String, Location> entry : subMap(prefix).entrySet()) {
+                values.put(entry.getKey(), new String(read(entry.getValue()), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        return Collections.unmodifiableSortedMap(values);
+    }
+
+    @Override
+    public void removeRange(String prefix) {
+        writeLock.lock();
+        try {
+            Map<String, String> removed = new HashMap<>();
+            subMap(prefix).keySet().forEach(key -> removed.put(key, null));
+            write(removed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Переписывает живые значения всех неактивных сегментов в один сегмент и удаляет старые.
+     * Записи и чтение во время уплотнения не останавливаются.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            List<Segment> inputs;
+            long inputsVersion;
+            writeLock.lock();
+            try {
+                if (active.size > SEGMENT_HEADER_BYTES) {
+                    rotate();
+                }
+                inputs = new ArrayList<>(segments.headMap(active.id, false).values());
+                inputsVersion = lastVersion;
+            } finally {
+                writeLock.unlock();
+            }
+            if (!inputs.isEmpty()) {
+                merge(inputs, inputsVersion);
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * @return размер записей во всех сегментах, включая устаревшие значения и удаления.
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * @return размер записей с текущими значениями ключей.
+     */
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        segmentsLock.writeLock().lock();
+        try {
+            if (active.channel.isOpen()) {
+                active.channel.force(false);
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } finally {
+            segmentsLock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    // Запись. Вызывается под writeLock; возвращает версию последней записи
+    private long write(Map<String, String> values) throws IOException {
+        List<byte[]> keys = new ArrayList<>(values.size());
+        List<byte[]> newValues = new ArrayList<>(values.size());
+        int batchBytes = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getValue() == null && !keydir.containsKey(entry.getKey())) {
+                continue;
+            }
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue() == null ? null : entry.getValue().getBytes(StandardCharsets.UTF_8);
+            keys.add(key);
+            newValues.add(value);
+            batchBytes += recordLength(key, value);
+        }
+        if (keys.isEmpty()) {
+            return NO_VERSION;
+        }
+        if (active.size > SEGMENT_HEADER_BYTES && active.size + batchBytes > maxSegmentBytes) {
+            rotate();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(batchBytes);
+        long firstVersion = lastVersion + 1;
+        for (int i = 0; i < keys.size(); i++) {
+            encode(batch, keys.get(i), newValues.get(i), firstVersion + i);
+        }
+        batch.flip();
+        Segment segment = active;
+        writeFully(segment.channel, batch, segment.size);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            segment.channel.force(false);
+        } else {
+            dirty = true;
+        }
+        long offset = segment.size;
+        for (int i = 0; i < keys.size(); i++) {
+            int length = recordLength(keys.get(i), newValues.get(i));
+            apply(new String(keys.get(i), StandardCharsets.UTF_8), segment, offset, keys.get(i).length,
+                    newValues.get(i) == null ? TOMBSTONE : newValues.get(i).length, length, firstVersion + i);
+            offset += length;
+        }
+        segment.size = offset;
+        totalBytes.addAndGet(batchBytes);
+        lastVersion = firstVersion + keys.size() - 1;
+        return lastVersion;
+    }
+
+    private void apply(String key, Segment segment, long offset, int keyLength, int valueLength, int length,
+                       long version) {
+        Location previous;
+        if (valueLength == TOMBSTONE) {
+            previous = keydir.remove(key);
+        } else {
+            previous = keydir.put(key, new Location(segment, offset + RECORD_HEADER_BYTES + keyLength,
+                    valueLength, length, version));
+            liveBytes.addAndGet(length);
+        }
+        if (previous != null) {
+            liveBytes.addAndGet(-previous.recordLength);
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            active.channel.force(false);
+        }
+        Segment next = createSegment(segmentPath(active.id + 1), active.id + 1, 0, lastVersion);
+        segments.put(next.id, next);
+        active = next;
+    }
+
+    private void syncActive() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            active.channel.force(false);
+        } catch (IOException e) {
+            System.out.println("Не удалось сбросить сегмент на диск: " + e.getMessage());
+        }
+    }
+
+    // Уплотнение
+    private void scheduleCompactionIfNeeded() {
+        long total = totalBytes.get();
+        long dead = total - liveBytes.get();
+        if (dead >= compactionThresholdBytes && dead * 2 >= total && compactionScheduled.compareAndSet(false, true)) {
+            try {
+                background.execute(() -> {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        System.out.println("Не удалось уплотнить хранилище: " + e.getMessage());
+                    } finally {
+                        compactionScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                compactionScheduled.set(false);
+            }
+        }
+    }
+
+    private void merge(List<Segment> inputs, long inputsVersion) throws IOException {
+        long outputId = inputs.get(inputs.size() - 1).id;
+        Path temporary = directory.resolve(outputId + SEGMENT_SUFFIX + TMP_SUFFIX);
+        Segment output = createSegment(temporary, outputId, outputId, inputsVersion);
+        Set<Segment> inputSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        inputSet.addAll(inputs);
+        List<String> movedKeys = new ArrayList<>();
+        List<Location> oldLocations = new ArrayList<>();
+        List<Location> newLocations = new ArrayList<>();
+        try {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(output.channel), 1 << 16);
+            for (Map.Entry<String, Location> entry : keydir.entrySet()) {
+                Location location = entry.getValue();
+                if (!inputSet.contains(location.segment)) {
+                    continue;
+                }
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = read(location);
+                ByteBuffer record = ByteBuffer.allocate(location.recordLength);
+                encode(record, key, value, location.version);
+                out.write(record.array());
+                movedKeys.add(entry.getKey());
+                oldLocations.add(location);
+                newLocations.add(new Location(output, output.size + RECORD_HEADER_BYTES + key.length, value.length,
+                        location.recordLength, location.version));
+                output.size += location.recordLength;
+            }
+            out.flush();
+            output.channel.force(true);
+        } catch (IOException e) {
+            output.channel.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        segmentsLock.writeLock().lock();
+        try {
+            for (int i = 0; i < movedKeys.size(); i++) {
+                keydir.replace(movedKeys.get(i), oldLocations.get(i), newLocations.get(i));
+            }
+            Files.move(temporary, segmentPath(outputId), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            long removedBytes = 0;
+            for (Segment input : inputs) {
+                segments.remove(input.id);
+                input.channel.close();
+                if (input.id != outputId) {
+                    Files.deleteIfExists(segmentPath(input.id));
+                }
+                removedBytes += input.size - SEGMENT_HEADER_BYTES;
+            }
+            segments.put(outputId, output);
+            totalBytes.addAndGet(output.size - SEGMENT_HEADER_BYTES - removedBytes);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    // Восстановление при запуске
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX + TMP_SUFFIX)) {
+                    Files.delete(file);
+                } else if (name.matches("\\d+\\" + SEGMENT_SUFFIX)) {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        Collections.sort(ids);
+        long replacedBelow = 0;
+        for (long id : ids) {
+            long[] header = readHeader(segmentPath(id));
+            replacedBelow = Math.max(replacedBelow, header[0]);
+            lastVersion = Math.max(lastVersion, header[1]);
+        }
+        for (long id : ids) {
+            Path path = segmentPath(id);
+            if (id < replacedBelow || Files.size(path) <= SEGMENT_HEADER_BYTES) {
+                Files.delete(path);
+            } else {
+                replay(path, id);
+            }
+        }
+        long nextId = ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1;
+        active = createSegment(segmentPath(nextId), nextId, 0, lastVersion);
+        segments.put(nextId, active);
+    }
+
+    // Возвращает номер, ниже которого сегменты заменены, и последнюю выданную версию ключа
+    private long[] readHeader(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SEGMENT_MAGIC || in.readShort() != VERSION) {
+                throw new IOException("Файл " + path + " не является сегментом хранилища.");
+            }
+            return new long[]{in.readLong(), in.readLong()};
+        } catch (EOFException e) {
+            return new long[2]; // сегмент, оборванный при создании
+        }
+    }
+
+    private void replay(Path path, long id) throws IOException {
+        Segment segment = new Segment(id, FileChannel.open(path, StandardOpenOption.READ));
+        segments.put(id, segment);
+        long fileSize = segment.channel.size();
+        long offset = SEGMENT_HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            in.readFully(new byte[SEGMENT_HEADER_BYTES]);
+            while (offset + RECORD_HEADER_BYTES <= fileSize) {
+                int storedCrc = in.readInt();
+                int keyLength = in.readInt();
+                int valueLength = in.readInt();
+                long version = in.readLong();
+                long length = (long) RECORD_HEADER_BYTES + keyLength + Math.max(valueLength, 0);
+                if (keyLength < 0 || valueLength < TOMBSTONE || offset + length > fileSize) {
+                    break;
+                }
+                byte[] key = new byte[keyLength];
+                byte[] value = new byte[Math.max(valueLength, 0)];
+                in.readFully(key);
+                in.readFully(value);
+                crc.reset();
+                updateCrc(crc, keyLength, valueLength, version, key, value);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                apply(new String(key, StandardCharsets.UTF_8), segment, offset, keyLength, valueLength, (int) length,
+                        version);
+                lastVersion = Math.max(lastVersion, version);
+                offset += length;
+            }
+        } catch (EOFException e) {
+            // оборванная запись в конце сегмента
+        }
+        if (offset < fileSize) {
+            System.out.println("Сегмент " + path + " прочитан до байта " + offset + " из " + fileSize + ".");
+        }
+        segment.size = fileSize;
+        totalBytes.addAndGet(fileSize - SEGMENT_HEADER_BYTES);
+    }
+
+    // Файлы и записи
+    private Segment createSegment(Path path, long id, long replacedBelow, long lastVersion) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        header.putInt(SEGMENT_MAGIC).putShort(VERSION).putLong(replacedBelow).putLong(lastVersion).flip();
+        writeFully(channel, header, 0);
+        channel.position(SEGMENT_HEADER_BYTES);
+        Segment segment = new Segment(id, channel);
+        segment.size = SEGMENT_HEADER_BYTES;
+        return segment;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(id + SEGMENT_SUFFIX);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // не все системы позволяют открыть каталог; переименование тогда остаётся без fsync
+        }
+    }
+
+    private NavigableMap<String, Location> subMap(String prefix) {
+        return keydir.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static int recordLength(byte[] key, byte[] value) {
+        return RECORD_HEADER_BYTES + key.length + (value == null ? 0 : value.length);
+    }
+
+    private static void encode(ByteBuffer buffer, byte[] key, byte[] value, long version) {
+        int valueLength = value == null ? TOMBSTONE : value.length;
+        CRC32 crc = new CRC32();
+        updateCrc(crc, key.length, valueLength, version, key, value == null ? new byte[0] : value);
+        buffer.putInt((int) crc.getValue()).putInt(key.length).putInt(valueLength).putLong(version).put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    private static void updateCrc(CRC32 crc, int keyLength, int valueLength, long version, byte[] key,
+                                  byte[] value) {
+        crc.update(ByteBuffer.allocate(2 * Integer.BYTES + Long.BYTES).putInt(keyLength).putInt(valueLength)
+                .putLong(version).array());
+        crc.update(key);
+        crc.update(value);
+    }
+
+    private static byte[] read(Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.valueLength);
+        while (buffer.hasRemaining()) {
+            if (location.segment.channel.read(buffer, location.valueOffset + buffer.position()) < 0) {
+                throw new EOFException("Значение за концом сегмента " + location.segment.id + ".");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static final class Segment {
+
+        final long id;
+        final FileChannel channel;
+        long size;
+
+        Segment(long id, FileChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Положение значения в сегменте. Сравнивается по ссылке: уплотнение переносит ключ,
+     * только если его положение не сменилось новой записью.
+     */
+    private static final class Location {
+
+        final Segment segment;
+        final long valueOffset;
+        final int valueLength;
+        final int recordLength;
+        final long version;
+
+        Location(Segment segment, long valueOffset, int valueLength, int recordLength, long version) {
+            this.segment = segment;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordLength = recordLength;
+            this.version = version;
+        }
+    }
+}
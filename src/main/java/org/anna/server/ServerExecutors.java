@@ -0,0 +1,55 @@
+package org.anna.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнители для обработки запросов HttpTaskServer и KVServer.
+ * Без исполнителя HttpServer обрабатывает все запросы в единственном потоке-диспетчере.
+ */
+public final class ServerExecutors {
+
+    private ServerExecutors() {}
+
+    /**
+     * Отключает алгоритм Нейгла на соединениях HttpServer, если не задано иное. Заголовки и тело ответа
+     * уходят отдельными пакетами, и без этого второй пакет ждёт отложенного подтверждения клиента,
+     * около 40 мс на каждый запрос.
+     * <p>
+     * Это настройка всей JVM, и читается она один раз, поэтому серверы её не меняют: приложение вызывает
+     * метод при запуске до создания первого HttpServer, как {@link org.anna.Main#main}, или запускается
+     * с параметром {@code -Dsun.net.httpserver.nodelay=true}. Явно заданное значение параметра не меняется.
+     */
+    public static void disableNagle() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Пул с фиксированным числом потоков. Потоки демонические, чтобы незакрытый сервер не мешал завершению JVM.
+     */
+    public static ExecutorService fixedPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "http-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Пул по числу доступных ядер.
+     */
+    public static ExecutorService fixedPool() {
+        return fixedPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Пул с перехватом задач (ForkJoinPool) по числу доступных ядер.
+     */
+    public static ExecutorService workStealingPool() {
+        return Executors.newWorkStealingPool();
+    }
+}
@@ -0,0 +1,23 @@
+package org.anna.server;
+
+/**
+ * Значение ключа вместе с его версией. Версия растёт с каждой записью в хранилище.
+ */
+public final class VersionedValue {
+
+    private final String value;
+    private final long version;
+
+    public VersionedValue(String value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -13,7 +13,27 @@ public class Managers {
         return new HTTPTaskManager("8078");
     }
 
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    /**
+     * Возвращает менеджер с хранением задач по столбцам примитивов, см. {@link CompactTaskManager}.
+     */
+    public static TaskManager getCompact() {
+        return new CompactTaskManager();
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
+
+    /**
+     * Возвращает историю просмотров указанного размера.
+     *
+     * @param capacity Наибольшее число задач в истории.
+     */
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
+    }
 }
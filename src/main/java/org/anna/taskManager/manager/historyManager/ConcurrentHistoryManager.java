@@ -0,0 +1,109 @@
+package org.anna.taskManager.manager.historyManager;
+
+import org.anna.taskManager.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасная история просмотров поверх однопоточной.
+ * <p>
+ * Просмотры и удаления не ждут блокировку: если она занята, операция ставится в общую неблокирующую
+ * очередь и применяется к истории тем потоком, который удерживает блокировку. Очередь сохраняет порядок операций,
+ * поэтому правила исходной истории (уникальность задач и ограничение размера) не меняются.
+ * Чтение истории сначала применяет все накопленные операции. Если операций накопилось больше
+ * {@value #MAX_PENDING}, добавляющий поток дожидается блокировки и применяет их сам, чтобы очередь
+ * не росла быстрее, чем разбирается.
+ */
+public class ConcurrentHistoryManager implements HistoryManager {
+
+    private static final int MAX_PENDING = 1024;
+
+    private final HistoryManager delegate;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ConcurrentHistoryManager(HistoryManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ArrayList<Task> getHistory() {
+        lock.lock();
+        try {
+            drain();
+            return delegate.getHistory();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public HistoryPage getHistory(long cursor, int limit) {
+        lock.lock();
+        try {
+            drain();
+            return delegate.getHistory(cursor, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        apply(() -> delegate.add(task));
+    }
+
+    @Override
+    public void remove(long id) {
+        apply(() -> delegate.remove(id));
+    }
+
+    private void apply(Runnable operation) {
+        if (lock.tryLock()) {
+            try {
+                drain();
+                operation.run();
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            pending.add(operation);
+            if (pendingCount.incrementAndGet() > MAX_PENDING) {
+                lock.lock();
+                try {
+                    drain();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        tryDrain();
+    }
+
+    /**
+     * Применяет накопленные операции, если блокировка свободна. Если её держит другой поток,
+     * он увидит новые операции при повторной проверке очереди после освобождения блокировки.
+     */
+    private void tryDrain() {
+        while (!pending.isEmpty() && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drain() {
+        Runnable operation;
+        while ((operation = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            operation.run();
+        }
+    }
+}
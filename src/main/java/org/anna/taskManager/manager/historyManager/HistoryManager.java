@@ -7,6 +7,17 @@ public interface HistoryManager {
 
     ArrayList<Task> getHistory();
 
+    /**
+     * Возвращает страницу истории от самого давнего просмотра к последнему.
+     *
+     * @param cursor {@link HistoryPage#getCursor()} предыдущей страницы; {@code -1} для первой страницы.
+     *               Страница начинается с первого просмотра, сделанного после позиции курсора, поэтому удаление,
+     *               повторный просмотр или вытеснение задач между запросами не повторяет и не пропускает
+     *               остальные задачи. Задача, просмотренная снова, попадает на одну из следующих страниц.
+     * @param limit Наибольшее число задач на странице.
+     */
+    HistoryPage getHistory(long cursor, int limit);
+
     void add(Task task);
 
     void remove(long id);
@@ -0,0 +1,32 @@
+package org.anna.taskManager.manager.historyManager;
+
+import org.anna.taskManager.tasks.Task;
+
+import java.util.List;
+
+/**
+ * Страница истории просмотров и позиция, с которой начинается следующая страница.
+ * Позиция — порядковый номер последнего просмотра на странице. Номера просмотров только растут,
+ * поэтому позиция остаётся действительной, даже если задачу потом удалили, просмотрели снова или вытеснили.
+ */
+public final class HistoryPage {
+
+    private final List<Task> tasks;
+    private final long cursor;
+
+    public HistoryPage(List<Task> tasks, long cursor) {
+        this.tasks = tasks;
+        this.cursor = cursor;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Курсор для запроса следующей страницы; для пустой страницы — переданный курсор.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+}
@@ -3,108 +3,275 @@ package org.anna.taskManager.manager.historyManager;
 import org.anna.taskManager.tasks.Task;
 import java.util.*;
 
+/**
+ * История просмотров ограниченного размера: задачи без повторов в порядке последнего просмотра.
+ * <p>
+ * Двусвязный список хранится прямо в хеш-таблице с открытой адресацией по id задачи: id, задача
+ * и индексы соседних ячеек лежат в параллельных массивах под одним индексом. Поиск по id идёт
+ * линейным пробированием без упаковки в Long, удаление сдвигает следующие записи цепочки назад
+ * и поправляет ссылки их соседей. Таблица растёт удвоением, пока заполнена больше чем наполовину,
+ * поэтому добавление, удаление и вытеснение выполняются за O(1) без создания объектов.
+ * <p>
+ * Каждый просмотр получает возрастающий порядковый номер, он служит курсором страниц истории.
+ * Номера записей в порядке просмотров хранятся ещё и в массиве по возрастанию, чтобы найти позицию курсора
+ * двоичным поиском. Записи удалённых и повторно просмотренных задач в нём только помечаются, а сам массив
+ * пересобирается по списку, когда заполнится, т.е. не чаще чем через половину его длины добавлений.
+ */
 public class InMemoryHistoryManager implements HistoryManager {
 
-    private final Map<Long, Node> nodeMap = new HashMap<>();
-    private static final int HISTORY_CAPACITY = 10;
+    public static final int DEFAULT_CAPACITY = 10;
+    private static final int INITIAL_SLOTS = 16;
+    private static final int NONE = -1;
+    private static final long PHI = 0x9E3779B97F4A7C15L;
 
-    private Node head;
-    private Node tail;
-    int size;
+    private final int capacity;
+
+    private long[] ids;
+    private Task[] tasks;
+    private int[] prev;
+    private int[] next;
+    private long[] seqs;
+    private int[] orderIndex;
+    private long[] orderSeqs;
+    private int[] orderSlots;
+    private int orderSize;
+    private long lastSeq;
+    private int shift;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    public InMemoryHistoryManager() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Наибольшее число задач в истории; при переполнении вытесняется самый давний просмотр.
+     */
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        allocate(Integer.highestOneBit(Math.min(capacity, INITIAL_SLOTS)) * 4);
+    }
 
     @Override
     public ArrayList<Task> getHistory() {
-        return getTasks();
+        ArrayList<Task> list = new ArrayList<>(size);
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            list.add(tasks[slot]);
+        }
+        return list;
     }
 
     @Override
-    public void add(Task task) {
-        if (nodeMap.containsKey(task.getId())) {
-            remove(task.getId());
+    public HistoryPage getHistory(long cursor, int limit) {
+        int slot = cursor < 0 ? head : firstAfter(cursor);
+        List<Task> page = new ArrayList<>(Math.min(limit, size));
+        long last = cursor;
+        for (; slot != NONE && page.size() < limit; slot = next[slot]) {
+            page.add(tasks[slot]);
+            last = seqs[slot];
         }
-        if (size == HISTORY_CAPACITY) {
-            removeNode(head);
+        return new HistoryPage(page, last);
+    }
+
+    @Override
+    public void add(Task task) {
+        long id = task.getId();
+        int slot = find(id);
+        if (slot != NONE) {
+            unlink(slot);
+            orderSlots[orderIndex[slot]] = NONE;
+        } else {
+            if (size == capacity) {
+                int eldest = head;
+                unlink(eldest);
+                orderSlots[orderIndex[eldest]] = NONE;
+                delete(eldest);
+            } else if ((size + 1) * 2 > tasks.length) {
+                grow();
+            }
+            slot = emptySlot(id);
+            ids[slot] = id;
         }
-        linkLast(task);
+        tasks[slot] = task;
+        seqs[slot] = ++lastSeq;
+        appendOrder(slot);
+        linkLast(slot);
     }
 
     @Override
     public void remove(long id) {
-        removeNode(nodeMap.get(id));
+        int slot = find(id);
+        if (slot != NONE) {
+            unlink(slot);
+            orderSlots[orderIndex[slot]] = NONE;
+            delete(slot);
+        }
     }
 
-    // additional methods for the custom LinkedList
-    private void linkLast(Task task) {
-        final Node lastNode = tail;
-        final Node newNode = new Node(lastNode, task, null);
-        tail = newNode;
-        if (lastNode == null) {
-            head = newNode;
-        } else {
-            lastNode.setNext(newNode);
+    /**
+     * Ячейка первого просмотра с номером больше {@code seq} или {@link #NONE}, если таких нет.
+     */
+    private int firstAfter(long seq) {
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (orderSeqs[middle] <= seq) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
-        nodeMap.put(task.getId(), newNode);
-        size++;
+        while (low < orderSize && orderSlots[low] == NONE) {
+            low++;
+        }
+        return low < orderSize ? orderSlots[low] : NONE;
     }
 
-    private void removeNode(Node node) {
-        Node previousNode = node.getPrev();
-        Node nextNode = node.getNext();
-        if (previousNode == null && nextNode == null) {
-            head = null;
-            tail = null;
-        } else if (previousNode == null) {
-            nextNode.setPrev(null);
-            head = nextNode;
-        } else if (nextNode == null) {
-            previousNode.setNext(null);
-            tail = previousNode;
-        } else {
-            previousNode.setNext(nextNode);
-            nextNode.setPrev(previousNode);
+    /**
+     * Дописывает просмотр ещё не связанной в список ячейки в конец массива номеров.
+     * Заполненный массив сначала пересобирается по списку: в нём остаётся не больше половины ячеек таблицы.
+     */
+    private void appendOrder(int slot) {
+        if (orderSize == orderSeqs.length) {
+            rebuildOrder();
         }
-        size--;
+        orderSeqs[orderSize] = seqs[slot];
+        orderSlots[orderSize] = slot;
+        orderIndex[slot] = orderSize++;
     }
 
-    private ArrayList<Task> getTasks() {
-        ArrayList<Task> list = new ArrayList<>();
-        Node currentNode = head;
-        while (currentNode != null) {
-            list.add(currentNode.getData());
-            currentNode = currentNode.getNext();
+    private void rebuildOrder() {
+        orderSize = 0;
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            orderSeqs[orderSize] = seqs[slot];
+            orderSlots[orderSize] = slot;
+            orderIndex[slot] = orderSize++;
         }
-        return list;
     }
-}
 
-class Node {
-    private Node prev;
-    private final Task data;
-    private Node next;
+    // additional methods for the custom LinkedList
+    private int home(long id) {
+        return (int) ((id * PHI) >>> shift);
+    }
+
+    private int find(long id) {
+        int mask = tasks.length - 1;
+        for (int slot = home(id); tasks[slot] != null; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
 
-    public Node(Node prev, Task data, Node next) {
-        this.prev = prev;
-        this.data = data;
-        this.next = next;
+    private int emptySlot(long id) {
+        int mask = tasks.length - 1;
+        int slot = home(id);
+        while (tasks[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
     }
 
-    public Node getPrev() {
-        return prev;
+    /**
+     * Освобождает ячейку уже отвязанной записи: следующие записи цепочки переезжают в дыру,
+     * если она не дальше их собственной ячейки, а их соседи по списку получают новый индекс.
+     */
+    private void delete(int slot) {
+        int mask = tasks.length - 1;
+        int hole = slot;
+        for (int from = (hole + 1) & mask; tasks[from] != null; from = (from + 1) & mask) {
+            int home = home(ids[from]);
+            if (((from - home) & mask) >= ((from - hole) & mask)) {
+                move(from, hole);
+                hole = from;
+            }
+        }
+        tasks[hole] = null;
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        tasks[to] = tasks[from];
+        prev[to] = prev[from];
+        next[to] = next[from];
+        seqs[to] = seqs[from];
+        orderIndex[to] = orderIndex[from];
+        orderSlots[orderIndex[to]] = to;
+        if (prev[to] == NONE) {
+            head = to;
+        } else {
+            next[prev[to]] = to;
+        }
+        if (next[to] == NONE) {
+            tail = to;
+        } else {
+            prev[next[to]] = to;
+        }
     }
 
-    public void setPrev(Node prev) {
-        this.prev = prev;
+    private void grow() {
+        long[] oldIds = ids;
+        Task[] oldTasks = tasks;
+        long[] oldSeqs = seqs;
+        int[] oldNext = next;
+        int oldHead = head;
+        allocate(tasks.length * 2);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+        for (int slot = oldHead; slot != NONE; slot = oldNext[slot]) {
+            int newSlot = emptySlot(oldIds[slot]);
+            ids[newSlot] = oldIds[slot];
+            tasks[newSlot] = oldTasks[slot];
+            seqs[newSlot] = oldSeqs[slot];
+            linkLast(newSlot);
+        }
+        rebuildOrder();
     }
 
-    public Task getData() {
-        return data;
+    private void allocate(int slots) {
+        ids = new long[slots];
+        tasks = new Task[slots];
+        prev = new int[slots];
+        next = new int[slots];
+        seqs = new long[slots];
+        orderIndex = new int[slots];
+        orderSeqs = new long[slots];
+        orderSlots = new int[slots];
+        shift = 64 - Integer.numberOfTrailingZeros(slots);
     }
 
-    public Node getNext() {
-        return next;
+    private void linkLast(int slot) {
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+        size++;
     }
 
-    public void setNext(Node next) {
-        this.next = next;
+    private void unlink(int slot) {
+        int previousSlot = prev[slot];
+        int nextSlot = next[slot];
+        if (previousSlot == NONE) {
+            head = nextSlot;
+        } else {
+            next[previousSlot] = nextSlot;
+        }
+        if (nextSlot == NONE) {
+            tail = previousSlot;
+        } else {
+            prev[nextSlot] = previousSlot;
+        }
+        size--;
     }
 }
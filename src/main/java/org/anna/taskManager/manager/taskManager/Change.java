@@ -0,0 +1,66 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.*;
+
+/**
+ * Изменение хранилища, произведённое одной операцией менеджера.
+ * FileBackedTasksManager записывает такие изменения в журнал, а HTTPTaskManager отправляет их на KVServer.
+ */
+class Change {
+
+    enum Operation {
+        PUT, REMOVE, CLEAR, VIEW
+    }
+
+    private final Operation operation;
+    private final Type type;
+    private final long id;
+    private final Task task;
+
+    private Change(Operation operation, Type type, long id, Task task) {
+        this.operation = operation;
+        this.type = type;
+        this.id = id;
+        this.task = task;
+    }
+
+    static Change put(Task task) {
+        return new Change(Operation.PUT, task.getType(), task.getId(), task);
+    }
+
+    static Change remove(Task task) {
+        return remove(task.getType(), task.getId());
+    }
+
+    static Change remove(Type type, long id) {
+        return new Change(Operation.REMOVE, type, id, null);
+    }
+
+    /**
+     * Просмотр задачи: задача переносится в конец истории просмотров. Такие записи есть только в журналах
+     * прежних версий, теперь просмотры пишутся в отдельный журнал просмотров.
+     */
+    static Change view(Type type, long id) {
+        return new Change(Operation.VIEW, type, id, null);
+    }
+
+    static Change clear(Type type) {
+        return new Change(Operation.CLEAR, type, 0, null);
+    }
+
+    Operation getOperation() {
+        return operation;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    Task getTask() {
+        return task;
+    }
+}
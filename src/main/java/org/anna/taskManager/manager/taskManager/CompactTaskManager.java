@@ -0,0 +1,631 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.manager.Managers;
+import org.anna.taskManager.manager.historyManager.HistoryManager;
+import org.anna.taskManager.manager.historyManager.HistoryPage;
+import org.anna.taskManager.tasks.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.anna.taskManager.tasks.EpochMinutes.NO_TIME;
+import static org.anna.taskManager.tasks.EpochMinutes.fromEpochMinutes;
+import static org.anna.taskManager.tasks.EpochMinutes.toEpochMinutes;
+
+/**
+ * Менеджер задач с хранением по столбцам: каждое поле задач лежит в своём массиве примитивов,
+ * а задача — это номер строки в этих массивах. Объекты задач создаются только при выдаче наружу,
+ * поэтому менеджер возвращает копии, а не сохранённые объекты, как {@link InMemoryTaskManager}.
+ * <p>
+ * Идентификаторы выдаются по возрастанию, а новые строки добавляются в конец, поэтому столбец id
+ * упорядочен и строка находится двоичным поиском без отдельного словаря. Удалённые строки
+ * помечаются свободными и вычищаются при добавлении, когда их становится больше, чем занятых.
+ * Тип и статус хранятся в одном байте, время — в минутах от эпохи, т.е. с точностью до минуты.
+ * Запланированные задачи и подзадачи упорядочены по времени начала в {@link Schedule};
+ * интервалы не пересекаются, поэтому время начала в нём уникально. Статус и время эпика
+ * пересчитываются по накопленным показателям его подзадач, без обхода всех подзадач при каждом изменении.
+ */
+public class CompactTaskManager implements TaskManager {
+
+    private static final byte FREE = 0;
+    private static final int INITIAL_ROWS = 16;
+    private static final int MIN_FREE_ROWS_TO_COMPACT = 64;
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final HistoryManager historyManager;
+    private long taskId;
+
+    private long[] ids = new long[INITIAL_ROWS];
+    private byte[] kinds = new byte[INITIAL_ROWS];
+    private int[] durations = new int[INITIAL_ROWS];
+    private long[] startTimes = new long[INITIAL_ROWS];
+    /** Для подзадачи — id эпика, для эпика — время окончания в минутах. */
+    private long[] links = new long[INITIAL_ROWS];
+    private String[] titles = new String[INITIAL_ROWS];
+    private String[] descriptions = new String[INITIAL_ROWS];
+    /** Подзадачи эпика и показатели по ним; у задач и подзадач не заполняется. */
+    private Children[] children = new Children[INITIAL_ROWS];
+    private int rows;
+    private int freeRows;
+
+    private final Schedule schedule = new Schedule();
+
+    public CompactTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    public CompactTaskManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    @Override
+    public ArrayList<Task> getHistoryManager() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(long cursor, int limit) {
+        return historyManager.getHistory(cursor, limit);
+    }
+
+    // Task's methods
+    @Override
+    public ArrayList<Task> getListOfTasks() {
+        return list(Type.TASK, -1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void removeAllTasks() {
+        removeAll(Type.TASK);
+    }
+
+    @Override
+    public Optional<Task> getTaskById(long id) {
+        return view(row(id, Type.TASK));
+    }
+
+    @Override
+    public boolean containsTask(long id) {
+        return row(id, Type.TASK) >= 0;
+    }
+
+    @Override
+    public void removeTaskById(long id) {
+        int row = row(id, Type.TASK);
+        if (row >= 0) {
+            unschedule(row);
+            free(row);
+            historyManager.remove(id);
+        }
+    }
+
+    @Override
+    public void createTask(Task task) {
+        if (timeIsAvailable(task, -1)) {
+            task.setId(nextId());
+            int row = appendRow(task.getId());
+            write(row, Type.TASK, task, task.getStatus());
+            schedule(row);
+        }
+    }
+
+    @Override
+    public void updateTask(long id, Task task, Status status) {
+        int row = row(id, Type.TASK);
+        if (row >= 0 && timeIsAvailable(task, id)) {
+            task.setId(id);
+            task.setStatus(status);
+            unschedule(row);
+            write(row, Type.TASK, task, status);
+            schedule(row);
+        }
+    }
+
+    // Epic's methods
+    @Override
+    public ArrayList<Epic> getListOfEpics() {
+        return list(Type.EPIC, -1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void removeAllEpics() {
+        removeAll(Type.SUBTASK);
+        removeAll(Type.EPIC);
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(long id) {
+        return view(row(id, Type.EPIC));
+    }
+
+    @Override
+    public boolean containsEpic(long id) {
+        return row(id, Type.EPIC) >= 0;
+    }
+
+    @Override
+    public void removeEpicById(long id) {
+        int row = row(id, Type.EPIC);
+        if (row >= 0) {
+            historyManager.remove(id);
+            LongList subtaskIds = children[row].ids;
+            for (int i = 0; i < subtaskIds.size(); i++) {
+                long subtaskId = subtaskIds.get(i);
+                historyManager.remove(subtaskId);
+                int subtaskRow = row(subtaskId);
+                unschedule(subtaskRow);
+                free(subtaskRow);
+            }
+            free(row);
+        }
+    }
+
+    @Override
+    public void createEpic(Epic epic) {
+        epic.setId(nextId());
+        int row = appendRow(epic.getId());
+        write(row, Type.EPIC, epic, epic.getStatus());
+        children[row] = new Children();
+    }
+
+    @Override
+    public void updateEpic(long id, Epic epic) {
+        int row = row(id, Type.EPIC);
+        if (row >= 0) {
+            epic.setId(id);
+            epic.setSubtasksIdArray(children[row].ids.toArrayList());
+            write(row, Type.EPIC, epic, epic.getStatus());
+        }
+    }
+
+    @Override
+    public ArrayList<Subtask> getAllEpicSubtasks(long id) {
+        ArrayList<Subtask> epicSubtasks = new ArrayList<>();
+        int row = row(id, Type.EPIC);
+        if (row >= 0) {
+            LongList subtaskIds = children[row].ids;
+            for (int i = 0; i < subtaskIds.size(); i++) {
+                epicSubtasks.add((Subtask) toTask(row(subtaskIds.get(i))));
+            }
+        }
+        return epicSubtasks;
+    }
+
+    // Subtask's methods
+    @Override
+    public ArrayList<Subtask> getListOfSubtasks() {
+        return list(Type.SUBTASK, -1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void removeAllSubtasks() {
+        for (int row = 0; row < rows; row++) {
+            if (type(row) == Type.EPIC) {
+                children[row].clear();
+            }
+        }
+        removeAll(Type.SUBTASK);
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(long id) {
+        return view(row(id, Type.SUBTASK));
+    }
+
+    @Override
+    public boolean containsSubtask(long id) {
+        return row(id, Type.SUBTASK) >= 0;
+    }
+
+    @Override
+    public void removeSubtaskById(long id) {
+        int row = row(id, Type.SUBTASK);
+        if (row >= 0) {
+            int epicRow = row(links[row], Type.EPIC);
+            unschedule(row);
+            children[epicRow].ids.removeValue(id);
+            children[epicRow].uncount(status(row), startTimes[row], durations[row]);
+            free(row);
+            checkEpicStatus(epicRow);
+            checkEpicStartAndEndTime(epicRow);
+            historyManager.remove(id);
+        }
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask, long epicId) {
+        if (row(epicId, Type.EPIC) >= 0 && timeIsAvailable(subtask, -1)) {
+            subtask.setId(nextId());
+            subtask.setEpicId(epicId);
+            int row = appendRow(subtask.getId());
+            write(row, Type.SUBTASK, subtask, subtask.getStatus());
+            links[row] = epicId;
+            schedule(row);
+            int epicRow = row(epicId, Type.EPIC);
+            children[epicRow].ids.add(subtask.getId());
+            children[epicRow].count(status(row), startTimes[row], durations[row]);
+            checkEpicStartAndEndTime(epicRow);
+        }
+    }
+
+    @Override
+    public void updateSubtask(long id, Subtask subtask, Status status) {
+        int row = row(id, Type.SUBTASK);
+        if (row >= 0 && timeIsAvailable(subtask, id)) {
+            subtask.setId(id);
+            subtask.setStatus(status);
+            subtask.setEpicId(links[row]);
+            int epicRow = row(links[row], Type.EPIC);
+            unschedule(row);
+            children[epicRow].uncount(status(row), startTimes[row], durations[row]);
+            write(row, Type.SUBTASK, subtask, status);
+            children[epicRow].count(status, startTimes[row], durations[row]);
+            schedule(row);
+            checkEpicStatus(epicRow);
+            checkEpicStartAndEndTime(epicRow);
+        }
+    }
+
+    /**
+     * Собирает задачи и подзадачи в порядке приоритета в новое множество: запланированные по времени начала,
+     * затем остальные по id.
+     */
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return new LinkedHashSet<>(getPrioritizedTasksPage(null, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<Task> getTasksPage(long cursor, int limit) {
+        return list(Type.TASK, cursor, limit);
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(long cursor, int limit) {
+        return list(Type.EPIC, cursor, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(long cursor, int limit) {
+        return list(Type.SUBTASK, cursor, limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksPage(PriorityCursor cursor, int limit) {
+        Schedule.Position next = schedule.ceiling(Long.MIN_VALUE);
+        int fromRow = 0;
+        if (cursor != null) {
+            if (cursor.getStartMinutes() != NO_TIME) {
+                next = schedule.ceiling(cursor.getStartMinutes());
+                if (next.isValid() && next.getStart() == cursor.getStartMinutes() && next.getId() <= cursor.getId()) {
+                    next.next();
+                }
+            } else {
+                next = schedule.end();
+                int index = Arrays.binarySearch(ids, 0, rows, cursor.getId());
+                fromRow = index >= 0 ? index + 1 : -index - 1;
+            }
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit, 64));
+        for (; next.isValid() && page.size() < limit; next.next()) {
+            page.add(toTask(row(next.getId())));
+        }
+        for (int row = fromRow; row < rows && page.size() < limit; row++) {
+            Type type = type(row);
+            if ((type == Type.TASK || type == Type.SUBTASK) && startTimes[row] == NO_TIME) {
+                page.add(toTask(row));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<Task> findConflicts(LocalDateTime start, LocalDateTime end) {
+        List<Task> conflicts = new ArrayList<>();
+        long startMinutes = toEpochMinutes(start);
+        long endMinutes = toEpochMinutes(end);
+        Schedule.Position previous = schedule.lower(startMinutes);
+        if (previous.isValid() && scheduledEnd(previous) >= startMinutes) {
+            conflicts.add(toTask(row(previous.getId())));
+        }
+        for (Schedule.Position next = schedule.ceiling(startMinutes);
+             next.isValid() && next.getStart() <= endMinutes; next.next()) {
+            conflicts.add(toTask(row(next.getId())));
+        }
+        return conflicts;
+    }
+
+    private long nextId() {
+        return taskId++;
+    }
+
+    /**
+     * Проверяет, свободно ли время задачи. Пересечение с задачей {@code id} (её предыдущей версией
+     * при обновлении) конфликтом не считается; при создании передаётся {@code -1}.
+     */
+    private boolean timeIsAvailable(Task task, long id) {
+        if (task.getStartTime() == null) {
+            return true;
+        }
+        long startMinutes = task.getStartMinutes();
+        long endMinutes = task.getEndMinutes();
+        Schedule.Position previous = schedule.lower(startMinutes);
+        if (previous.isValid() && scheduledEnd(previous) >= startMinutes && previous.getId() != id) {
+            return false;
+        }
+        for (Schedule.Position next = schedule.ceiling(startMinutes);
+             next.isValid() && next.getStart() <= endMinutes; next.next()) {
+            if (next.getId() != id) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long scheduledEnd(Schedule.Position position) {
+        return position.getStart() + durations[row(position.getId())];
+    }
+
+    private void schedule(int row) {
+        if (startTimes[row] != NO_TIME) {
+            schedule.insert(startTimes[row], ids[row]);
+        }
+    }
+
+    private void unschedule(int row) {
+        if (startTimes[row] != NO_TIME) {
+            schedule.remove(startTimes[row], ids[row]);
+        }
+    }
+
+    private void checkEpicStatus(int epicRow) {
+        Children subtasks = children[epicRow];
+        if (subtasks.done == subtasks.ids.size()) {
+            kinds[epicRow] = kind(Type.EPIC, Status.DONE);
+        } else if (subtasks.started > 0) {
+            kinds[epicRow] = kind(Type.EPIC, Status.IN_PROGRESS);
+        }
+    }
+
+    /**
+     * Переносит в строку эпика время его запланированных подзадач. Границы пересчитываются обходом подзадач,
+     * только если удалили или перенесли подзадачу, на которой они достигались.
+     */
+    private void checkEpicStartAndEndTime(int epicRow) {
+        Children subtasks = children[epicRow];
+        if (subtasks.scheduled == 0) {
+            return;
+        }
+        if (subtasks.boundsStale) {
+            long start = Long.MAX_VALUE;
+            long end = Long.MIN_VALUE;
+            for (int i = 0; i < subtasks.ids.size(); i++) {
+                int row = row(subtasks.ids.get(i));
+                if (startTimes[row] != NO_TIME) {
+                    start = Math.min(start, startTimes[row]);
+                    end = Math.max(end, startTimes[row] + durations[row]);
+                }
+            }
+            subtasks.start = start;
+            subtasks.end = end;
+            subtasks.boundsStale = false;
+        }
+        durations[epicRow] = subtasks.duration;
+        startTimes[epicRow] = subtasks.start;
+        links[epicRow] = subtasks.end;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> ArrayList<T> list(Type type, long cursor, int limit) {
+        ArrayList<T> list = new ArrayList<>();
+        int index = Arrays.binarySearch(ids, 0, rows, cursor);
+        for (int row = index >= 0 ? index + 1 : -index - 1; row < rows && list.size() < limit; row++) {
+            if (type(row) == type) {
+                list.add((T) toTask(row));
+            }
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> Optional<T> view(int row) {
+        if (row < 0) {
+            return Optional.empty();
+        }
+        T task = (T) toTask(row);
+        historyManager.add(task);
+        return Optional.of(task);
+    }
+
+    private void removeAll(Type type) {
+        for (int row = 0; row < rows; row++) {
+            if (type(row) == type) {
+                if (type != Type.EPIC) {
+                    unschedule(row);
+                }
+                free(row);
+            }
+        }
+    }
+
+    private int row(long id) {
+        int row = Arrays.binarySearch(ids, 0, rows, id);
+        return row >= 0 && kinds[row] != FREE ? row : -1;
+    }
+
+    private int row(long id, Type type) {
+        int row = row(id);
+        return row >= 0 && type(row) == type ? row : -1;
+    }
+
+    private Type type(int row) {
+        return kinds[row] == FREE ? null : TYPES[(kinds[row] >> 4) - 1];
+    }
+
+    private Status status(int row) {
+        return STATUSES[kinds[row] & 0xF];
+    }
+
+    private static byte kind(Type type, Status status) {
+        return (byte) ((type.ordinal() + 1) << 4 | status.ordinal());
+    }
+
+    private void write(int row, Type type, Task task, Status status) {
+        kinds[row] = kind(type, status);
+        durations[row] = task.getDuration();
+        startTimes[row] = task.getStartMinutes();
+        titles[row] = task.getTitle();
+        descriptions[row] = task.getDescription();
+        if (type == Type.EPIC) {
+            links[row] = task.getEndMinutes();
+        }
+    }
+
+    private Task toTask(int row) {
+        Task task;
+        switch (type(row)) {
+            case SUBTASK:
+                Subtask subtask = new Subtask(titles[row], descriptions[row], durations[row],
+                        fromEpochMinutes(startTimes[row]));
+                subtask.setEpicId(links[row]);
+                task = subtask;
+                break;
+            case EPIC:
+                Epic epic = new Epic(titles[row], descriptions[row]);
+                epic.setDuration(durations[row]);
+                epic.setStartTime(fromEpochMinutes(startTimes[row]));
+                epic.setEndTime(fromEpochMinutes(links[row]));
+                epic.setSubtasksIdArray(children[row].ids.toArrayList());
+                task = epic;
+                break;
+            default:
+                task = new Task(titles[row], descriptions[row], durations[row], fromEpochMinutes(startTimes[row]));
+                break;
+        }
+        task.setId(ids[row]);
+        task.setStatus(status(row));
+        return task;
+    }
+
+    /**
+     * Добавляет строку в конец столбцов. Перед этим вычищает свободные строки, если их больше, чем занятых:
+     * это единственное место, где строки сдвигаются, поэтому номера строк действительны до следующего добавления.
+     */
+    private int appendRow(long id) {
+        if (freeRows >= MIN_FREE_ROWS_TO_COMPACT && freeRows * 2 > rows) {
+            compact();
+        }
+        if (rows == ids.length) {
+            resize(rows * 2);
+        }
+        ids[rows] = id;
+        return rows++;
+    }
+
+    private void free(int row) {
+        kinds[row] = FREE;
+        titles[row] = null;
+        descriptions[row] = null;
+        children[row] = null;
+        freeRows++;
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int row = 0; row < rows; row++) {
+            if (kinds[row] != FREE) {
+                ids[live] = ids[row];
+                kinds[live] = kinds[row];
+                durations[live] = durations[row];
+                startTimes[live] = startTimes[row];
+                links[live] = links[row];
+                titles[live] = titles[row];
+                descriptions[live] = descriptions[row];
+                children[live] = children[row];
+                live++;
+            }
+        }
+        Arrays.fill(kinds, live, rows, FREE);
+        Arrays.fill(titles, live, rows, null);
+        Arrays.fill(descriptions, live, rows, null);
+        Arrays.fill(children, live, rows, null);
+        rows = live;
+        freeRows = 0;
+        if (rows < ids.length / 4 && ids.length > INITIAL_ROWS) {
+            resize(Math.max(INITIAL_ROWS, ids.length / 2));
+        }
+    }
+
+    private void resize(int length) {
+        ids = Arrays.copyOf(ids, length);
+        kinds = Arrays.copyOf(kinds, length);
+        durations = Arrays.copyOf(durations, length);
+        startTimes = Arrays.copyOf(startTimes, length);
+        links = Arrays.copyOf(links, length);
+        titles = Arrays.copyOf(titles, length);
+        descriptions = Arrays.copyOf(descriptions, length);
+        children = Arrays.copyOf(children, length);
+    }
+
+    /**
+     * Подзадачи эпика в порядке создания и накопленные по ним показатели: число подзадач в статусе DONE
+     * и не в статусе NEW, число и суммарная продолжительность запланированных подзадач и их границы в минутах.
+     * Показатели меняются за O(1) при добавлении, изменении и удалении подзадачи. Границу, на которой
+     * достигался минимум или максимум, удалением не восстановить, поэтому она помечается устаревшей
+     * и пересчитывается в {@link #checkEpicStartAndEndTime(int)}.
+     */
+    private static final class Children {
+
+        final LongList ids = new LongList();
+        int done;
+        int started;
+        int scheduled;
+        int duration;
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        boolean boundsStale;
+
+        void count(Status status, long startMinutes, int subtaskDuration) {
+            if (status == Status.DONE) {
+                done++;
+            }
+            if (status != Status.NEW) {
+                started++;
+            }
+            if (startMinutes != NO_TIME) {
+                scheduled++;
+                duration += subtaskDuration;
+                start = Math.min(start, startMinutes);
+                end = Math.max(end, startMinutes + subtaskDuration);
+            }
+        }
+
+        void uncount(Status status, long startMinutes, int subtaskDuration) {
+            if (status == Status.DONE) {
+                done--;
+            }
+            if (status != Status.NEW) {
+                started--;
+            }
+            if (startMinutes != NO_TIME) {
+                scheduled--;
+                duration -= subtaskDuration;
+                if (startMinutes == start || startMinutes + subtaskDuration == end) {
+                    boundsStale = true;
+                }
+            }
+        }
+
+        void clear() {
+            ids.clear();
+            done = 0;
+            started = 0;
+            scheduled = 0;
+            duration = 0;
+            start = Long.MAX_VALUE;
+            end = Long.MIN_VALUE;
+            boundsStale = false;
+        }
+    }
+}
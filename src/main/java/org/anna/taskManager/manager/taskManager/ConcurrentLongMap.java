@@ -0,0 +1,53 @@
+package org.anna.taskManager.manager.taskManager;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Потокобезопасный {@link LongMap} поверх ConcurrentSkipListMap для ConcurrentTaskManager.
+ */
+class ConcurrentLongMap<V> implements LongMap<V> {
+
+    private final ConcurrentNavigableMap<Long, V> map = new ConcurrentSkipListMap<>();
+
+    @Override
+    public V get(long key) {
+        return map.get(key);
+    }
+
+    @Override
+    public V put(long key, V value) {
+        return map.put(key, value);
+    }
+
+    @Override
+    public V remove(long key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map.values();
+    }
+
+    @Override
+    public Iterable<V> tailValues(long key) {
+        return map.tailMap(key, false).values();
+    }
+}
@@ -0,0 +1,315 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.manager.Managers;
+import org.anna.taskManager.manager.historyManager.*;
+import org.anna.taskManager.tasks.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасный менеджер задач для обслуживания запросов из нескольких потоков.
+ * Чтение идёт без блокировок по конкурентным коллекциям. Изменения задачи, а также эпика и его подзадач
+ * защищены блокировкой из набора, выбираемой по идентификатору задачи или эпика, поэтому изменения
+ * разных задач и эпиков выполняются параллельно. Операции, затрагивающие расписание (задачи с временем начала),
+ * дополнительно берут общую блокировку, т.к. пересечения по времени проверяются среди всех задач сразу;
+ * задачи без времени её не берут. Блокировки всегда берутся в порядке: задача или эпик, затем расписание.
+ * Удаление всех задач одного типа берёт все блокировки набора, поэтому любое создание, изменение или удаление
+ * тоже выполняется под блокировкой из набора, даже если не затрагивает расписание.
+ * <p>
+ * Список подзадач эпика не меняется на месте, а заменяется копией, поэтому его можно читать
+ * и сериализовать без блокировок.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+
+    private static final int LOCK_STRIPES = 16;
+
+    private final AtomicLong idGenerator = new AtomicLong();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+
+    public ConcurrentTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    /**
+     * @param historyManager История просмотров; доступ к ней из нескольких потоков обеспечивает
+     *                       {@link ConcurrentHistoryManager}.
+     */
+    public ConcurrentTaskManager(HistoryManager historyManager) {
+        super(historyManager);
+        tasks = new ConcurrentLongMap<>();
+        epics = new ConcurrentLongMap<>();
+        subtasks = new ConcurrentLongMap<>();
+        epicSubtasks = new ConcurrentHashMap<>();
+        this.historyManager = new ConcurrentHistoryManager(historyManager);
+        indexed = new ConcurrentLongMap<>();
+        prioritizedTasks = new ConcurrentSkipListSet<>(PRIORITY_ORDER);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Task's methods
+    @Override
+    public void removeAllTasks() {
+        lockAll();
+        scheduleLock.lock();
+        try {
+            super.removeAllTasks();
+        } finally {
+            scheduleLock.unlock();
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void removeTaskById(long id) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            if (tasks.containsKey(id)) {
+                runScheduled(isScheduled(id), () -> super.removeTaskById(id));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Id новой задачи ещё не назначен, поэтому берётся блокировка, выбранная по потоку: создания из разных
+     * потоков не мешают друг другу, но не пересекаются с удалением всех задач.
+     */
+    @Override
+    public void createTask(Task task) {
+        ReentrantLock lock = lock(Thread.currentThread().getId());
+        lock.lock();
+        try {
+            runScheduled(isTimed(task), () -> super.createTask(task));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateTask(long id, Task task, Status status) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            if (tasks.containsKey(id)) {
+                runScheduled(isScheduled(id) || isTimed(task), () -> super.updateTask(id, task, status));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Epic's methods
+    @Override
+    public void removeAllEpics() {
+        lockAll();
+        scheduleLock.lock();
+        try {
+            super.removeAllEpics();
+        } finally {
+            scheduleLock.unlock();
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void removeEpicById(long id) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            EpicSubtasks subtasksOfEpic = epicSubtasks.get(id);
+            runScheduled(subtasksOfEpic != null && subtasksOfEpic.hasScheduledSubtasks(),
+                    () -> super.removeEpicById(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see #createTask(Task)
+     */
+    @Override
+    public void createEpic(Epic epic) {
+        ReentrantLock lock = lock(Thread.currentThread().getId());
+        lock.lock();
+        try {
+            super.createEpic(epic);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEpic(long id, Epic epic) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            super.updateEpic(id, epic);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Читает подзадачи без блокировки по опубликованному списку подзадач эпика. Подзадачи,
+     * удалённые во время чтения, пропускаются.
+     */
+    @Override
+    public ArrayList<Subtask> getAllEpicSubtasks(long id) {
+        Epic epic = epics.get(id);
+        ArrayList<Subtask> epicsSub = new ArrayList<>();
+        if (epic != null) {
+            for (Long subId : epic.getSubtasksIdArray()) {
+                Subtask subtask = subtasks.get(subId);
+                if (subtask != null) {
+                    epicsSub.add(subtask);
+                }
+            }
+        }
+        return epicsSub;
+    }
+
+    // Subtask's methods
+    @Override
+    public void removeAllSubtasks() {
+        lockAll();
+        scheduleLock.lock();
+        try {
+            super.removeAllSubtasks();
+        } finally {
+            scheduleLock.unlock();
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void removeSubtaskById(long id) {
+        IndexedTask subtask = indexed.get(id);
+        if (subtask == null || subtask.getType() != Type.SUBTASK) {
+            return;
+        }
+        ReentrantLock lock = lock(subtask.getEpicId());
+        lock.lock();
+        try {
+            if (subtasks.containsKey(id)) {
+                runScheduled(isScheduled(id), () -> super.removeSubtaskById(id));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask, long epicId) {
+        ReentrantLock lock = lock(epicId);
+        lock.lock();
+        try {
+            runScheduled(isTimed(subtask), () -> super.createSubtask(subtask, epicId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateSubtask(long id, Subtask subtask, Status status) {
+        IndexedTask current = indexed.get(id);
+        if (current == null || current.getType() != Type.SUBTASK) {
+            return;
+        }
+        ReentrantLock lock = lock(current.getEpicId());
+        lock.lock();
+        try {
+            if (subtasks.containsKey(id)) {
+                runScheduled(isScheduled(id) || isTimed(subtask),
+                        () -> super.updateSubtask(id, subtask, status));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> findConflicts(LocalDateTime start, LocalDateTime end) {
+        scheduleLock.lock();
+        try {
+            return super.findConflicts(start, end);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    protected long nextId() {
+        return idGenerator.getAndIncrement();
+    }
+
+    /**
+     * Список подзадач эпика заменяется копией, чтобы читатели без блокировок не видели его изменения.
+     */
+    @Override
+    protected void addSubtaskId(Epic epic, long subtaskId) {
+        ArrayList<Long> ids = new ArrayList<>(epic.getSubtasksIdArray());
+        ids.add(subtaskId);
+        epic.setSubtasksIdArray(ids);
+    }
+
+    @Override
+    protected void removeSubtaskId(Epic epic, long subtaskId) {
+        ArrayList<Long> ids = new ArrayList<>(epic.getSubtasksIdArray());
+        ids.remove((Long) subtaskId);
+        epic.setSubtasksIdArray(ids);
+    }
+
+    private static boolean isTimed(Task task) {
+        return task.getStartTime() != null;
+    }
+
+    /**
+     * Была ли сохранённая задача запланирована, по снимку из индексов, а не по полям объекта, которые могли измениться.
+     */
+    private boolean isScheduled(long id) {
+        IndexedTask key = indexed.get(id);
+        return key != null && key.isScheduled();
+    }
+
+    /**
+     * Выполняет операцию под блокировкой расписания, если она затрагивает задачи с временем начала.
+     */
+    private void runScheduled(boolean timed, Runnable operation) {
+        if (!timed) {
+            operation.run();
+            return;
+        }
+        scheduleLock.lock();
+        try {
+            operation.run();
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    private ReentrantLock lock(long id) {
+        return locks[Long.hashCode(id) & (LOCK_STRIPES - 1)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
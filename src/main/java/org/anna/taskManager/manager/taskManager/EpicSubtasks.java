@@ -0,0 +1,85 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Подзадачи одного эпика и накопленные по ним показатели: число подзадач в каждом статусе,
+ * суммарная продолжительность и запланированные подзадачи, упорядоченные по времени начала и окончания в минутах.
+ * Показатели пересчитываются при каждом добавлении или удалении подзадачи за O(log n),
+ * поэтому статус и время эпика определяются без обхода всех его подзадач.
+ * Подзадача учитывается и удаляется по снимку {@link IndexedTask}, сделанному при добавлении.
+ */
+class EpicSubtasks {
+
+    private final Map<Long, IndexedTask> subtasks = new LinkedHashMap<>();
+    private final int[] statusCounts = new int[Status.values().length];
+    private final NavigableSet<IndexedTask> byStartTime = new TreeSet<>(
+            Comparator.comparingLong(IndexedTask::getStartMinutes).thenComparingLong(IndexedTask::getId));
+    private final NavigableSet<IndexedTask> byEndTime = new TreeSet<>(
+            Comparator.comparingLong(IndexedTask::getEndMinutes).thenComparingLong(IndexedTask::getId));
+    private int duration;
+
+    Set<Long> getIds() {
+        return subtasks.keySet();
+    }
+
+    void add(IndexedTask subtask) {
+        if (subtasks.putIfAbsent(subtask.getId(), subtask) != null) {
+            return;
+        }
+        statusCounts[subtask.getStatus().ordinal()]++;
+        if (subtask.isScheduled()) {
+            duration += subtask.getDuration();
+            byStartTime.add(subtask);
+            byEndTime.add(subtask);
+        }
+    }
+
+    void remove(long id) {
+        IndexedTask subtask = subtasks.remove(id);
+        if (subtask == null) {
+            return;
+        }
+        statusCounts[subtask.getStatus().ordinal()]--;
+        if (subtask.isScheduled()) {
+            duration -= subtask.getDuration();
+            byStartTime.remove(subtask);
+            byEndTime.remove(subtask);
+        }
+    }
+
+    void clear() {
+        subtasks.clear();
+        Arrays.fill(statusCounts, 0);
+        byStartTime.clear();
+        byEndTime.clear();
+        duration = 0;
+    }
+
+    boolean isCompleted() {
+        return statusCounts[Status.DONE.ordinal()] == subtasks.size();
+    }
+
+    boolean isInProgress() {
+        return statusCounts[Status.IN_PROGRESS.ordinal()] + statusCounts[Status.DONE.ordinal()] > 0;
+    }
+
+    boolean hasScheduledSubtasks() {
+        return !byStartTime.isEmpty();
+    }
+
+    int getDuration() {
+        return duration;
+    }
+
+    LocalDateTime getStartTime() {
+        return byStartTime.first().getStartTime();
+    }
+
+    LocalDateTime getEndTime() {
+        return byEndTime.last().getEndTime();
+    }
+}
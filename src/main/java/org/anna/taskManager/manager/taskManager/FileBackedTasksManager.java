@@ -1,10 +1,12 @@
 package org.anna.taskManager.manager.taskManager;
 
 import org.anna.customExceptions.ManagerSaveException;
-import org.anna.taskManager.manager.historyManager.HistoryManager;
 import org.anna.taskManager.tasks.*;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -12,103 +14,370 @@ import java.util.stream.*;
 
 public class FileBackedTasksManager extends InMemoryTaskManager {
 
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String HISTORY_SUFFIX = ".history";
+    private static final String VIEWS_SUFFIX = ".views";
+    private static final int MIN_JOURNAL_RECORDS_TO_COMPACT = 1000;
+    private static final int DECODE_CHUNK_RECORDS = 8192;
+
     private final String path;
+    private DataOutputStream journal;
+    private int journalRecords;
+    private DataOutputStream views;
+    private int viewRecords;
 
     public FileBackedTasksManager(String path) {
         this.path = path;
     }
 
+    /**
+     * Восстанавливает состояние менеджера из снимка и журнала изменений, записанного после него.
+     * История просмотров берётся из снимка и дополняется просмотрами из журнала изменений (их писали
+     * прежние версии) и затем из журнала просмотров. Отдельный файл истории прежних версий, если он остался,
+     * заменяет историю из снимка и журнала изменений: такие журналы просмотров не содержат.
+     *
+     * @param file Файл снимка; журналы и история ищутся рядом с ним по тому же имени
+     *             с суффиксами {@code .journal}, {@code .views} и {@code .history}.
+     */
     public static FileBackedTasksManager loadFromFile(File file) throws IOException {
-        FileBackedTasksManager manager = new FileBackedTasksManager("src/main/resources/test.csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(file.getPath());
+        List<Long> history;
+        ByteBuffer snapshot = read(file.toPath());
+        if (SnapshotFormat.readHeader(snapshot, SnapshotFormat.SNAPSHOT_MAGIC)) {
+            history = manager.readSnapshot(snapshot);
+        } else {
+            history = manager.readCsvSnapshot(file);
+        }
+
+        Set<Long> viewed = new LinkedHashSet<>(history);
+        Path journalFile = Paths.get(file.getPath() + JOURNAL_SUFFIX);
+        if (Files.exists(journalFile)) {
+            manager.replayJournal(read(journalFile), viewed);
+        }
+
+        Path historyFile = Paths.get(file.getPath() + HISTORY_SUFFIX);
+        if (Files.exists(historyFile)) {
+            viewed = new LinkedHashSet<>(fromString(new String(Files.readAllBytes(historyFile)).trim()));
+        }
+
+        Path viewsFile = Paths.get(file.getPath() + VIEWS_SUFFIX);
+        if (Files.exists(viewsFile)) {
+            replayViews(read(viewsFile), viewed);
+        }
+
+        for (Long id : viewed) {
+            if (manager.tasks.containsKey(id)) {
+                manager.historyManager.add(manager.tasks.get(id));
+            } else if (manager.epics.containsKey(id)) {
+                manager.historyManager.add(manager.epics.get(id));
+            } else if (manager.subtasks.containsKey(id)) {
+                manager.historyManager.add(manager.subtasks.get(id));
+            }
+        }
+        manager.rebuildSubtaskIndex();
+        manager.restoreNextId();
+        manager.tasks.values().forEach(manager::addToPrioritized);
+        manager.subtasks.values().forEach(manager::addToPrioritized);
+        return manager;
+    }
+
+    /**
+     * Читает файл целиком в буфер в куче одним каналом, без промежуточных потоков и строк.
+     * Файл не отображается в память: отображение нельзя освободить без недокументированных API,
+     * а пока оно живо, Windows не даёт заменить снимок через {@link Files#move} или обрезать журнал.
+     */
+    private static ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Файл слишком велик для загрузки: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Файл укоротился во время чтения: " + path);
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Разбирает записи снимка параллельно: по длинам записей снимок делится на части по
+     * {@value #DECODE_CHUNK_RECORDS} записей, части разбираются в общем пуле ForkJoinPool,
+     * а результат добавляется в хранилище в исходном порядке.
+     */
+    private List<Long> readSnapshot(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        int chunks = (count + DECODE_CHUNK_RECORDS - 1) / DECODE_CHUNK_RECORDS;
+        int[] chunkOffsets = new int[chunks];
+        for (int i = 0; i < count; i++) {
+            if (i % DECODE_CHUNK_RECORDS == 0) {
+                chunkOffsets[i / DECODE_CHUNK_RECORDS] = buffer.position();
+            }
+            buffer.position(buffer.position() + Integer.BYTES + buffer.getInt(buffer.position()));
+        }
+        Task[] decoded = new Task[count];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            ByteBuffer records = buffer.duplicate();
+            records.position(chunkOffsets[chunk]);
+            int end = Math.min(count, (chunk + 1) * DECODE_CHUNK_RECORDS);
+            for (int i = chunk * DECODE_CHUNK_RECORDS; i < end; i++) {
+                decoded[i] = SnapshotFormat.readTask(records);
+            }
+        });
+        for (Task task : decoded) {
+            putTask(task);
+        }
+        int historySize = buffer.getInt();
+        List<Long> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.add(buffer.getLong());
+        }
+        return history;
+    }
+
+    /**
+     * Читает снимок в прежнем формате CSV, чтобы сохранённые ранее файлы открывались после перехода
+     * на двоичный формат. Следующая запись сохранит снимок уже в двоичном виде.
+     */
+    private List<Long> readCsvSnapshot(File file) throws IOException {
+        List<Long> history = new ArrayList<>();
         String str;
-        try (BufferedReader buffer = new BufferedReader(
-                new FileReader(file.getPath()))) {
+        try (BufferedReader buffer = new BufferedReader(new FileReader(file.getPath()))) {
             buffer.readLine();
             while ((str = buffer.readLine()) != null) {
                 if (!str.isEmpty()) {
-                    String[] taskFields = str.split(",");
-                    switch (Type.valueOf(taskFields[1])) {
-                        case TASK:
-                            manager.tasks.put(Long.valueOf(taskFields[0]), manager.taskFromString(str));
-                            break;
-                        case EPIC:
-                            manager.epics.put(Long.valueOf(taskFields[0]), (Epic) manager.taskFromString(str));
-                            break;
-                        case SUBTASK:
-                            manager.subtasks.put(Long.valueOf(taskFields[0]),
-                                    (Subtask) manager.taskFromString(str));
-                            break;
-                    }
+                    putTask(taskFromString(str));
                     continue;
                 }
                 str = buffer.readLine();
                 if (str != null) {
-                    for (Long id : fromString(str)) {
-                        if (manager.tasks.containsKey(id)) {
-                            manager.historyManager.add(manager.tasks.get(id));
-                        } else if (manager.epics.containsKey(id)) {
-                            manager.historyManager.add(manager.epics.get(id));
-                        } else {
-                            manager.historyManager.add(manager.subtasks.get(id));
-                        }
-                    }
+                    history = fromString(str);
                 }
             }
         }
-        return manager;
+        return history;
+    }
+
+    /**
+     * Применяет изменения из журнала. Незавершённая последняя запись (например, при сбое во время записи)
+     * отбрасывается.
+     *
+     * @param viewed Id истории просмотров в порядке просмотра; просмотры и удаления из журнала применяются к ним.
+     *               Сами задачи добавляются в историю после разбора журнала, когда их версии уже окончательные.
+     */
+    private void replayJournal(ByteBuffer buffer, Set<Long> viewed) throws IOException {
+        if (!SnapshotFormat.readHeader(buffer, SnapshotFormat.JOURNAL_MAGIC)) {
+            if (buffer.hasRemaining()) {
+                throw new IOException("Неизвестный формат журнала изменений.");
+            }
+            return;
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                Change change = SnapshotFormat.readChange(buffer);
+                switch (change.getOperation()) {
+                    case PUT:
+                        putTask(change.getTask());
+                        break;
+                    case REMOVE:
+                        tasks.remove(change.getId());
+                        epics.remove(change.getId());
+                        subtasks.remove(change.getId());
+                        viewed.remove(change.getId());
+                        break;
+                    case CLEAR:
+                        clearTasks(change.getType());
+                        break;
+                    case VIEW:
+                        viewed.remove(change.getId());
+                        viewed.add(change.getId());
+                        break;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            System.out.println("Журнал изменений обрывается на незавершённой записи, она пропущена.");
+        }
+    }
+
+    /**
+     * Применяет просмотры из журнала просмотров: каждая просмотренная задача переносится в конец истории.
+     * Просмотры удалённых позже задач не мешают: в историю попадают только задачи, оставшиеся в хранилище.
+     * Незавершённая последняя запись отбрасывается.
+     */
+    private static void replayViews(ByteBuffer buffer, Set<Long> viewed) throws IOException {
+        if (!SnapshotFormat.readHeader(buffer, SnapshotFormat.VIEWS_MAGIC)) {
+            if (buffer.hasRemaining()) {
+                throw new IOException("Неизвестный формат журнала просмотров.");
+            }
+            return;
+        }
+        while (buffer.remaining() >= Long.BYTES) {
+            long id = buffer.getLong();
+            viewed.remove(id);
+            viewed.add(id);
+        }
     }
 
+    void putTask(Task task) {
+        switch (task.getType()) {
+            case TASK:
+                tasks.put(task.getId(), task);
+                break;
+            case EPIC:
+                epics.put(task.getId(), (Epic) task);
+                break;
+            case SUBTASK:
+                subtasks.put(task.getId(), (Subtask) task);
+                break;
+        }
+    }
+
+    private void clearTasks(Type type) {
+        switch (type) {
+            case TASK:
+                tasks.clear();
+                break;
+            case EPIC:
+                epics.clear();
+                subtasks.clear();
+                break;
+            case SUBTASK:
+                subtasks.clear();
+                for (Epic epic : epics.values()) {
+                    epic.setSubtasksIdArray(new ArrayList<>());
+                }
+                break;
+        }
+    }
+
+    /**
+     * Записывает полный снимок состояния вместе с историей и очищает журналы изменений и просмотров.
+     * Файл истории прежних версий удаляется, т.к. история теперь хранится в снимке и журнале просмотров.
+     * Вызывается при первой записи и затем, когда журнал становится длиннее хранилища,
+     * поэтому в пересчёте на одну операцию стоимость остаётся постоянной.
+     */
     void save() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.join(",", "id", "type", "name", "status", "description", "duration",
-                "startTime", "epic/subtasks"));
-        sb.append("\n");
-        for (Task task: tasks.values()) {
-            sb.append(taskToString(task));
-            sb.append("\n");
-        }
-        for (Epic epic: epics.values()) {
-            sb.append(taskToString(epic));
-            sb.append("\n");
-        }
-        for (Subtask subtask: subtasks.values()) {
-            sb.append(taskToString(subtask));
-            sb.append("\n");
-        }
-        sb.append("\n");
-        sb.append(toString(historyManager));
-
-        if (!Files.exists(Paths.get(path))) {
-            try {
-                Files.createFile(Paths.get(path));
-            } catch (IOException e) {
-                e.printStackTrace();
+        Path snapshot = Paths.get(path);
+        Path tmp = Paths.get(path + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp.toFile())))) {
+                SnapshotFormat.writeHeader(out, SnapshotFormat.SNAPSHOT_MAGIC);
+                out.writeInt(tasks.size() + epics.size() + subtasks.size());
+                for (Task task : tasks.values()) {
+                    SnapshotFormat.writeTask(out, task);
+                }
+                for (Epic epic : epics.values()) {
+                    SnapshotFormat.writeTask(out, epic);
+                }
+                for (Subtask subtask : subtasks.values()) {
+                    SnapshotFormat.writeTask(out, subtask);
+                }
+                List<Task> history = historyManager.getHistory();
+                out.writeInt(history.size());
+                for (Task task : history) {
+                    out.writeLong(task.getId());
+                }
             }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (journal != null) {
+                journal.close();
+            }
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path + JOURNAL_SUFFIX)));
+            SnapshotFormat.writeHeader(journal, SnapshotFormat.JOURNAL_MAGIC);
+            journal.flush();
+            journalRecords = 0;
+            rewriteViews(Collections.emptyList());
+            Files.deleteIfExists(Paths.get(path + HISTORY_SUFFIX));
+        } catch (IOException e) {
+            throw new ManagerSaveException();
         }
+    }
 
-        try (Writer fileWriter = new FileWriter(path)) {
-            fileWriter.write(sb.toString());
+    /**
+     * Дописывает просмотр задачи в журнал просмотров. Просмотры не попадают в журнал изменений
+     * и не приближают перезапись снимка, поэтому чтение задач не переписывает хранилище целиком.
+     * Когда число просмотров, дописанных после последней замены журнала, превышает размер хранилища,
+     * журнал заменяется текущей историей. Её размер не больше числа задач, поэтому в пересчёте на просмотр
+     * стоимость остаётся постоянной.
+     * Задача к этому моменту уже перенесена в конец истории.
+     */
+    void appendView(Task task) {
+        try {
+            if (views == null) {
+                openViews();
+            } else if (viewRecords >= Math.max(MIN_JOURNAL_RECORDS_TO_COMPACT,
+                    tasks.size() + epics.size() + subtasks.size())) {
+                rewriteViews(historyManager.getHistory());
+                return;
+            }
+            views.writeLong(task.getId());
+            views.flush();
+            viewRecords++;
         } catch (IOException e) {
             throw new ManagerSaveException();
         }
     }
 
-    private String taskToString(Task task) {
-        String startTime = String.valueOf(task.getStartTime());
-        String result = String.join(",", Long.toString(task.getId()), task.getType().name(), task.getTitle(),
-                task.getStatus().name(), task.getDescription(), String.valueOf(task.getDuration()), startTime);
-        if (task instanceof Subtask) {
-            Subtask subtask = (Subtask) task;
-            return String.join(",", result, Long.toString(subtask.getEpicId()));
-        } else if (task instanceof Epic) {
-            StringBuilder sb = new StringBuilder();
-            Epic epic = (Epic) task;
-            for (Long id : epic.getSubtasksIdArray()) {
-                sb.append(id);
+    /**
+     * Открывает журнал просмотров для дописывания, например после {@link #loadFromFile}.
+     * Если журнала нет или он пуст, записывает заголовок.
+     */
+    private void openViews() throws IOException {
+        File file = new File(path + VIEWS_SUFFIX);
+        boolean empty = file.length() == 0;
+        views = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (empty) {
+            SnapshotFormat.writeHeader(views, SnapshotFormat.VIEWS_MAGIC);
+            views.flush();
+        }
+        viewRecords = 0;
+    }
+
+    /**
+     * Заменяет журнал просмотров записями данной истории. Новый журнал пишется во временный файл
+     * и подменяет прежний атомарно, поэтому при сбое остаётся один из двух журналов целиком.
+     */
+    private void rewriteViews(List<Task> history) throws IOException {
+        Path file = Paths.get(path + VIEWS_SUFFIX);
+        Path tmp = Paths.get(path + VIEWS_SUFFIX + ".tmp");
+        if (views != null) {
+            views.close();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp.toFile())))) {
+            SnapshotFormat.writeHeader(out, SnapshotFormat.VIEWS_MAGIC);
+            for (Task task : history) {
+                out.writeLong(task.getId());
             }
-            return String.join(",", result, sb.toString());
-        } else {
-            return result;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        views = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true)));
+        viewRecords = 0;
+    }
+
+    /**
+     * Дописывает в журнал изменения, произведённые одной операцией.
+     * Размер записи не зависит от размера хранилища.
+     *
+     * @param changes Изменения операции в порядке их применения.
+     */
+    void append(Change... changes) {
+        if (journal == null || journalRecords >= Math.max(MIN_JOURNAL_RECORDS_TO_COMPACT,
+                tasks.size() + epics.size() + subtasks.size())) {
+            save();
+            return;
+        }
+        try {
+            for (Change change : changes) {
+                SnapshotFormat.writeChange(journal, change);
+            }
+            journal.flush();
+            journalRecords += changes.length;
+        } catch (IOException e) {
+            throw new ManagerSaveException();
         }
     }
 
@@ -160,14 +429,10 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         }
     }
 
-    private static String toString(HistoryManager manager) {
-        return manager.getHistory().stream()
-                .map(Task::getId)
-                .map(String::valueOf)
-                .collect(Collectors.joining(","));
-    }
-
     private static List<Long> fromString(String value) {
+        if (value.isEmpty()) {
+            return new ArrayList<>();
+        }
         return Stream.of(value.split(","))
                 .map(Long::valueOf)
                 .collect(Collectors.toList());
@@ -177,31 +442,38 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     @Override
     public void removeAllTasks() {
         super.removeAllTasks();
-        save();
+        append(Change.clear(Type.TASK));
     }
 
     @Override
     public void removeTaskById(long id) {
-        super.removeTaskById(id);
-        save();
+        if (tasks.containsKey(id)) {
+            Task task = tasks.get(id);
+            super.removeTaskById(id);
+            append(Change.remove(task));
+        }
     }
 
     @Override
     public void createTask(Task task) {
         super.createTask(task);
-        save();
+        if (tasks.get(task.getId()) == task) {
+            append(Change.put(task));
+        }
     }
 
     @Override
     public void updateTask(long id, Task task, Status status) {
         super.updateTask(id, task, status);
-        save();
+        if (tasks.get(id) == task) {
+            append(Change.put(task));
+        }
     }
 
     @Override
     public Optional<Task> getTaskById(long id) {
         final Optional<Task> result = super.getTaskById(id);
-        save();
+        result.ifPresent(this::appendView);
         return result;
     }
 
@@ -209,31 +481,40 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     @Override
     public void removeAllEpics() {
         super.removeAllEpics();
-        save();
+        append(Change.clear(Type.EPIC));
     }
 
     @Override
     public void removeEpicById(long id) {
-        super.removeEpicById(id);
-        save();
+        if (epics.containsKey(id)) {
+            List<Change> changes = new ArrayList<>();
+            changes.add(Change.remove(epics.get(id)));
+            for (Subtask subtask : getAllEpicSubtasks(id)) {
+                changes.add(Change.remove(subtask));
+            }
+            super.removeEpicById(id);
+            append(changes.toArray(new Change[0]));
+        }
     }
 
     @Override
     public void createEpic(Epic epic) {
         super.createEpic(epic);
-        save();
+        append(Change.put(epic));
     }
 
     @Override
     public void updateEpic(long id, Epic epic) {
         super.updateEpic(id, epic);
-        save();
+        if (epics.get(id) == epic) {
+            append(Change.put(epic));
+        }
     }
 
     @Override
     public Optional<Epic> getEpicById(long id) {
         final Optional<Epic> result = super.getEpicById(id);
-        save();
+        result.ifPresent(this::appendView);
         return result;
     }
 
@@ -241,31 +522,38 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     @Override
     public void removeAllSubtasks() {
         super.removeAllSubtasks();
-        save();
+        append(Change.clear(Type.SUBTASK));
     }
 
     @Override
     public void removeSubtaskById(long id) {
-        super.removeSubtaskById(id);
-        save();
+        if (subtasks.containsKey(id)) {
+            Subtask subtask = subtasks.get(id);
+            super.removeSubtaskById(id);
+            append(Change.remove(subtask), Change.put(epics.get(subtask.getEpicId())));
+        }
     }
 
     @Override
     public void createSubtask(Subtask subtask, long epicId) {
         super.createSubtask(subtask, epicId);
-        save();
+        if (subtasks.get(subtask.getId()) == subtask) {
+            append(Change.put(subtask), Change.put(epics.get(epicId)));
+        }
     }
 
     @Override
     public void updateSubtask(long id, Subtask subtask, Status status) {
         super.updateSubtask(id, subtask, status);
-        save();
+        if (subtasks.get(id) == subtask) {
+            append(Change.put(subtask), Change.put(epics.get(subtask.getEpicId())));
+        }
     }
 
     @Override
     public Optional<Subtask> getSubtaskById(long id) {
         final Optional<Subtask> result = super.getSubtaskById(id);
-        save();
+        result.ifPresent(this::appendView);
         return result;
     }
 }
@@ -1,89 +1,375 @@
 package org.anna.taskManager.manager.taskManager;
 
 import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import org.anna.customExceptions.ManagerSaveException;
 import org.anna.server.KVTaskClient;
 import org.anna.taskManager.tasks.*;
 
 import java.io.IOException;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
-public class HTTPTaskManager extends FileBackedTasksManager {
+/**
+ * Менеджер, хранящий каждую задачу на KVServer под отдельным ключом вида {@code task/{id}}.
+ * После каждой операции на сервер отправляются только изменившиеся задачи,
+ * поэтому объём запросов не растёт вместе с хранилищем.
+ * <p>
+ * История просмотров хранится так же по ключу на просмотр: {@code history/{n}} содержит id задачи,
+ * где n растёт с каждым просмотром. Просмотр записывает новый ключ и удаляет прежний ключ той же задачи,
+ * поэтому чтение задачи не отправляет на сервер всю историю. Ключи вытесненных из истории задач остаются
+ * до следующей полной перезаписи и отбрасываются при загрузке тем же ограничением размера истории.
+ * <p>
+ * В режиме отложенной записи изменения копятся в очереди и отправляются отдельным потоком
+ * по таймеру или при накоплении заданного числа изменений; повторные изменения одного ключа
+ * объединяются. Методы {@link #flush()} и {@link #close()} дожидаются отправки всех изменений.
+ * После {@link #close()} изменения отправляются сразу после операции, как без отложенной записи.
+ */
+public class HTTPTaskManager extends FileBackedTasksManager implements AutoCloseable {
+
+    private static final String HISTORY_KEY = "history";
+    private static final String HISTORY_PREFIX = HISTORY_KEY + "/";
+    private static final int BATCH_CHUNK_SIZE = 500;
 
     private final KVTaskClient client;
     private static final Gson gson = new GsonBuilder().registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .create();
 
+    // пакеты изменений (Map) и префиксы удаляемых диапазонов (String) в порядке операций
+    private final Deque<Object> outbox = new ArrayDeque<>();
+    private int pendingChanges;
+    private final int maxPendingChanges;
+    private final ScheduledExecutorService flusher;
+    // после close() поток отправки остановлен, и изменения отправляет вызывающий поток
+    private volatile boolean closed;
+
+    // номер ключа истории для каждой просмотренной задачи
+    private final Map<Long, Long> historyKeys = new HashMap<>();
+    private long historySeq;
+
     public HTTPTaskManager(String serverPort) throws IOException, InterruptedException {
+        this(serverPort, 0, 0);
+    }
+
+    /**
+     * Создаёт менеджер с отложенной записью на сервер.
+     *
+     * @param serverPort Порт KVServer.
+     * @param flushIntervalMillis Период отправки накопленных изменений; 0 — отправлять сразу после операции.
+     * @param maxPendingChanges Число накопленных изменений, при котором отправка начинается не дожидаясь таймера.
+     */
+    public HTTPTaskManager(String serverPort, long flushIntervalMillis, int maxPendingChanges)
+            throws IOException, InterruptedException {
         super(serverPort);
         client = new KVTaskClient(serverPort);
+        this.maxPendingChanges = maxPendingChanges;
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "http-task-manager-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    drain();
+                } catch (ManagerSaveException e) {
+                    System.out.println("Не удалось отправить изменения на сервер, повторная попытка по таймеру.");
+                }
+            }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
     }
 
     public KVTaskClient getClient() {
         return client;
     }
 
+    /**
+     * Полностью перезаписывает состояние менеджера на сервере.
+     */
     @Override
     void save() {
-        client.put("tasks", gson.toJson(tasks));
-        client.put("epics", gson.toJson(epics));
-        client.put("subtasks", gson.toJson(subtasks));
-        client.put("history", gson.toJson(getHistoryManager()));
-        client.put("prioritizedTasks", gson.toJson(getPrioritizedTasks()));
+        for (Type type : Type.values()) {
+            clear(keyPrefix(type));
+        }
+        clear(HISTORY_PREFIX);
+        write(HISTORY_KEY, null);
+        historyKeys.clear();
+        tasks.values().forEach(task -> write(key(task.getType(), task.getId()), gson.toJson(task)));
+        epics.values().forEach(epic -> write(key(epic.getType(), epic.getId()), gson.toJson(epic)));
+        subtasks.values().forEach(subtask -> write(key(subtask.getType(), subtask.getId()),
+                gson.toJson(subtask)));
+        for (Task task : getHistoryManager()) {
+            writeView(task.getId());
+        }
+        send();
     }
 
-    public static HTTPTaskManager loadFromServer(String serverPort) throws IOException, InterruptedException {
-        HTTPTaskManager manager = new HTTPTaskManager(serverPort);
+    /**
+     * Отправляет изменения одной операции на сервер одним пакетным запросом.
+     * Отдельные запросы нужны только для очистки целого типа задач.
+     * Задачи сериализуются сразу, поэтому поток отправки не обращается к коллекциям менеджера.
+     */
+    @Override
+    void append(Change... changes) {
+        for (Change change : changes) {
+            switch (change.getOperation()) {
+                case PUT:
+                    write(key(change.getType(), change.getId()), gson.toJson(change.getTask()));
+                    break;
+                case REMOVE:
+                    write(key(change.getType(), change.getId()), null);
+                    forgetView(change.getId());
+                    break;
+                case CLEAR:
+                    clear(keyPrefix(change.getType()));
+                    if (change.getType() == Type.EPIC) {
+                        clear(keyPrefix(Type.SUBTASK));
+                    } else if (change.getType() == Type.SUBTASK) {
+                        epics.values().forEach(epic -> write(key(epic.getType(), epic.getId()),
+                                gson.toJson(epic)));
+                    }
+                    new ArrayList<>(historyKeys.keySet()).stream()
+                            .filter(id -> !tasks.containsKey(id) && !epics.containsKey(id)
+                                    && !subtasks.containsKey(id))
+                            .forEach(this::forgetView);
+                    break;
+            }
+        }
+        send();
+    }
 
-        manager.tasks = gson.fromJson(manager.getClient().load("tasks"),
-                    new TypeToken<HashMap<Long, Task>>() {}.getType());
-        manager.epics = gson.fromJson(manager.getClient().load("epics"),
-                    new TypeToken<HashMap<Long, Epic>>() {}.getType());
-        manager.subtasks = gson.fromJson(manager.getClient().load("subtasks"),
-                    new TypeToken<HashMap<Long, Subtask>>() {}.getType());
-
-        JsonElement jsonHistory = JsonParser.parseString(manager.getClient().load("history"));
-        if (jsonHistory.isJsonArray()) {
-            JsonArray jsonArray = jsonHistory.getAsJsonArray();
-            for (JsonElement element : jsonArray) {
-                JsonObject object = element.getAsJsonObject();
-                String type = object.get("type").getAsString();
-
-                if (Type.TASK.name().equals(type)) {
-                    manager.historyManager.add(gson.fromJson(object, Task.class));
-                } else if (Type.EPIC.name().equals(type)) {
-                    manager.historyManager.add(gson.fromJson(object, Epic.class));
-                } else {
-                    manager.historyManager.add(gson.fromJson(object, Subtask.class));
+    /**
+     * Отправляет просмотр на сервер вместо журнала просмотров FileBackedTasksManager.
+     */
+    @Override
+    void appendView(Task task) {
+        writeView(task.getId());
+        send();
+    }
+
+    /**
+     * Записывает просмотр задачи под новым ключом истории и удаляет её прежний ключ.
+     */
+    private void writeView(long id) {
+        forgetView(id);
+        long seq = ++historySeq;
+        historyKeys.put(id, seq);
+        write(HISTORY_PREFIX + seq, String.valueOf(id));
+    }
+
+    private void forgetView(long id) {
+        Long seq = historyKeys.remove(id);
+        if (seq != null) {
+            write(HISTORY_PREFIX + seq, null);
+        }
+    }
+
+    /**
+     * Дожидается отправки на сервер всех изменений, сделанных до вызова.
+     */
+    public void flush() {
+        if (flusher == null || closed) {
+            drain();
+            return;
+        }
+        try {
+            flusher.submit(this::drain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException();
+        } catch (ExecutionException e) {
+            throw new ManagerSaveException();
+        }
+    }
+
+    /**
+     * Отправляет накопленные изменения и останавливает поток отложенной записи.
+     * Менеджером можно пользоваться и после закрытия: изменения будут отправляться синхронно.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (flusher != null && !closed) {
+                flusher.shutdown();
+                try {
+                    // отправка, начатая по таймеру, должна закончиться раньше синхронной
+                    flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+                closed = true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(String key, String value) {
+        synchronized (outbox) {
+            if (!(outbox.peekLast() instanceof Map)) {
+                outbox.addLast(new LinkedHashMap<String, String>());
             }
+            ((Map<String, String>) outbox.peekLast()).put(key, value);
+            pendingChanges++;
+        }
+    }
+
+    private void clear(String prefix) {
+        synchronized (outbox) {
+            outbox.addLast(prefix);
+            pendingChanges++;
         }
+    }
 
-        JsonElement jsonPrioritizedTasks = JsonParser.parseString(manager.getClient().load("prioritizedTasks"));
-        if (jsonPrioritizedTasks.isJsonArray()) {
-            JsonArray jsonArray = jsonPrioritizedTasks.getAsJsonArray();
-            for (JsonElement element : jsonArray) {
-                JsonObject object = element.getAsJsonObject();
-                String type = object.get("type").getAsString();
+    private void send() {
+        if (flusher == null || closed) {
+            drain();
+            return;
+        }
+        boolean full;
+        synchronized (outbox) {
+            full = pendingChanges >= maxPendingChanges;
+        }
+        if (full) {
+            flusher.execute(this::drain);
+        }
+    }
 
-                if (Type.TASK.name().equals(type)) {
-                    manager.prioritizedTasks.add(gson.fromJson(object, Task.class));
-                } else if (Type.EPIC.name().equals(type)) {
-                    manager.prioritizedTasks.add(gson.fromJson(object, Epic.class));
+    /**
+     * Отправляет накопленные изменения в порядке операций. В режиме отложенной записи до закрытия
+     * выполняется только потоком отправки, поэтому пакеты не могут обогнать друг друга.
+     * Большой пакет делится на части, которые отправляются параллельно.
+     * Если отправка пакета или удаление диапазона не удались, неотправленные изменения
+     * возвращаются в начало очереди.
+     */
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        List<Object> items;
+        synchronized (outbox) {
+            items = new ArrayList<>(outbox);
+            outbox.clear();
+            pendingChanges = 0;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.get(i);
+            try {
+                if (item instanceof Map) {
+                    putAllPipelined((Map<String, String>) item);
                 } else {
-                    manager.prioritizedTasks.add(gson.fromJson(object, Subtask.class));
+                    client.deleteRangeAsync((String) item).join();
                 }
+            } catch (CompletionException e) {
+                synchronized (outbox) {
+                    List<Object> unsent = items.subList(i, items.size());
+                    for (int j = unsent.size() - 1; j >= 0; j--) {
+                        outbox.addFirst(unsent.get(j));
+                    }
+                    pendingChanges += unsent.size();
+                }
+                throw new ManagerSaveException();
+            }
+        }
+    }
+
+    private void putAllPipelined(Map<String, String> batch) {
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        Map<String, String> chunk = new HashMap<>();
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() == BATCH_CHUNK_SIZE) {
+                requests.add(client.putAllAsync(chunk));
+                chunk = new HashMap<>();
             }
         }
+        if (!chunk.isEmpty()) {
+            requests.add(client.putAllAsync(chunk));
+        }
+        // все части уже отправлены, поэтому ожидание по очереди не замедляет их выполнение
+        for (CompletableFuture<Void> request : requests) {
+            request.join();
+        }
+    }
+
+    /**
+     * Восстанавливает состояние менеджера с сервера за один пакетный запрос.
+     * Значения разбираются из JSON параллельно в общем пуле ForkJoinPool, затем добавляются в хранилище
+     * по возрастанию id, чтобы каждая запись дописывалась в конец хранилища.
+     */
+    public static HTTPTaskManager loadFromServer(String serverPort) throws IOException, InterruptedException {
+        HTTPTaskManager manager = new HTTPTaskManager(serverPort);
+        Map<String, String> values = manager.getClient().loadAll(List.of(keyPrefix(Type.TASK) + "*",
+                keyPrefix(Type.EPIC) + "*", keyPrefix(Type.SUBTASK) + "*", HISTORY_PREFIX + "*", HISTORY_KEY));
+
+        values.entrySet().parallelStream()
+                .map(HTTPTaskManager::fromEntry)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingLong(Task::getId))
+                .collect(Collectors.toList())
+                .forEach(manager::putTask);
+
+        NavigableMap<Long, Long> views = new TreeMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getKey().startsWith(HISTORY_PREFIX)) {
+                views.put(Long.parseLong(entry.getKey().substring(HISTORY_PREFIX.length())),
+                        Long.parseLong(entry.getValue()));
+            }
+        }
+        List<Long> history = new ArrayList<>(views.values());
+        views.forEach((seq, id) -> manager.historyKeys.put(id, seq));
+        if (!views.isEmpty()) {
+            manager.historySeq = views.lastKey();
+        }
+        // история одним ключом, как её сохраняли прежние версии
+        String jsonHistory = values.get(HISTORY_KEY);
+        if (views.isEmpty() && jsonHistory != null) {
+            for (long id : gson.fromJson(jsonHistory, long[].class)) {
+                history.add(id);
+            }
+        }
+        for (long id : history) {
+            if (manager.tasks.containsKey(id)) {
+                manager.historyManager.add(manager.tasks.get(id));
+            } else if (manager.epics.containsKey(id)) {
+                manager.historyManager.add(manager.epics.get(id));
+            } else if (manager.subtasks.containsKey(id)) {
+                manager.historyManager.add(manager.subtasks.get(id));
+            }
+        }
+
+        manager.rebuildSubtaskIndex();
+        manager.restoreNextId();
+        manager.tasks.values().forEach(manager::addToPrioritized);
+        manager.subtasks.values().forEach(manager::addToPrioritized);
         return manager;
     }
 
+    private static Task fromEntry(Map.Entry<String, String> entry) {
+        if (entry.getKey().startsWith(keyPrefix(Type.TASK))) {
+            return gson.fromJson(entry.getValue(), Task.class);
+        } else if (entry.getKey().startsWith(keyPrefix(Type.EPIC))) {
+            return gson.fromJson(entry.getValue(), Epic.class);
+        } else if (entry.getKey().startsWith(keyPrefix(Type.SUBTASK))) {
+            return gson.fromJson(entry.getValue(), Subtask.class);
+        }
+        return null;
+    }
+
+    private static String keyPrefix(Type type) {
+        return type.name().toLowerCase(Locale.ROOT) + "/";
+    }
+
+    private static String key(Type type, long id) {
+        return keyPrefix(type) + id;
+    }
+
     static class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
 
         private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy, HH:mm");
@@ -9,27 +9,49 @@ import java.util.*;
 
 public class InMemoryTaskManager implements TaskManager {
 
+    protected static final Comparator<IndexedTask> PRIORITY_ORDER = InMemoryTaskManager::comparePriority;
+
     private long taskId;
 
-    protected HashMap<Long, Task> tasks;
-    public HashMap<Long, Epic> epics;
-    public HashMap<Long, Subtask> subtasks; // TODO
+    protected LongMap<Task> tasks;
+    public LongMap<Epic> epics;
+    public LongMap<Subtask> subtasks; // TODO
+    protected Map<Long, EpicSubtasks> epicSubtasks;
     protected HistoryManager historyManager;
-    protected Set<Task> prioritizedTasks;
+    /**
+     * Снимки задач и подзадач по id, по которым они лежат в списке приоритетов, расписании и показателях эпиков.
+     */
+    protected LongMap<IndexedTask> indexed;
+    protected NavigableSet<IndexedTask> prioritizedTasks;
+    protected TimeIntervalIndex schedule;
 
     public InMemoryTaskManager() {
-        tasks = new HashMap<>();
-        epics = new HashMap<>();
-        subtasks = new HashMap<>();
-        historyManager = Managers.getDefaultHistory();
-        prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime,
-                Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Task::getId));
+        this(Managers.getDefaultHistory());
+    }
+
+    /**
+     * @param historyManager История просмотров, например {@link Managers#getDefaultHistory(int)} нужного размера.
+     */
+    public InMemoryTaskManager(HistoryManager historyManager) {
+        tasks = new LongHashMap<>();
+        epics = new LongHashMap<>();
+        subtasks = new LongHashMap<>();
+        epicSubtasks = new HashMap<>();
+        this.historyManager = historyManager;
+        indexed = new LongHashMap<>();
+        prioritizedTasks = new TreeSet<>(PRIORITY_ORDER);
+        schedule = new TimeIntervalIndex();
     }
 
     public ArrayList<Task> getHistoryManager() {
         return historyManager.getHistory();
     }
 
+    @Override
+    public HistoryPage getHistoryPage(long cursor, int limit) {
+        return historyManager.getHistory(cursor, limit);
+    }
+
     // Task's methods
     @Override
     public ArrayList<Task> getListOfTasks() {
@@ -41,23 +63,31 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void removeAllTasks() {
+        for (Task task : tasks.values()) {
+            removeFromPrioritized(task.getId());
+        }
         tasks.clear();
-        prioritizedTasks.removeIf(task -> task.getType() == Type.TASK);
     }
 
     @Override
     public Optional<Task> getTaskById(long id) {
-        if (!tasks.containsKey(id)) {
+        Task task = tasks.get(id);
+        if (task == null) {
             return Optional.empty();
         }
-        historyManager.add(tasks.get(id));
-        return Optional.of(tasks.get(id));
+        historyManager.add(task);
+        return Optional.of(task);
+    }
+
+    @Override
+    public boolean containsTask(long id) {
+        return tasks.containsKey(id);
     }
 
     @Override
     public void removeTaskById(long id) {
         if (tasks.containsKey(id)) {
-            prioritizedTasks.remove(tasks.get(id));
+            removeFromPrioritized(id);
             tasks.remove(id);
             historyManager.remove(id);
         }
@@ -66,30 +96,21 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void createTask(Task task) {
         if (timeIsAvailable(task)) {
-            task.setId(taskId);
+            task.setId(nextId());
+            // задача становится доступной по id последней, когда она уже в списке приоритетов
+            addToPrioritized(task);
             tasks.put(task.getId(), task);
-            prioritizedTasks.add(task);
-            taskId++;
         }
     }
 
     @Override
     public void updateTask(long id, Task task, Status status) {
-        boolean afterTimeCheck = false;
-        boolean beforeTimeCheck = false;
-        if (tasks.containsKey(id) && task.getStartTime() != null &&
-                tasks.get(id).getStartTime() != null) {
-            afterTimeCheck = task.getStartTime().isAfter(tasks.get(id).getStartTime()) ||
-                    task.getStartTime().equals(tasks.get(id).getStartTime());
-            beforeTimeCheck = task.getEndTime().isBefore(tasks.get(id).getEndTime()) ||
-                    task.getEndTime().equals(tasks.get(id).getEndTime());
-        }
-        if (tasks.containsKey(id) && (timeIsAvailable(task)
-                || afterTimeCheck && beforeTimeCheck)) {
+        if (tasks.containsKey(id) && timeIsAvailable(task, id)) {
             task.setId(id);
             task.setStatus(status);
+            removeFromPrioritized(id);
             tasks.put(id, task);
-            prioritizedTasks.add(task);
+            addToPrioritized(task);
         }
     }
 
@@ -104,40 +125,48 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void removeAllEpics() {
+        for (Subtask subtask : subtasks.values()) {
+            removeFromPrioritized(subtask.getId());
+        }
         epics.clear();
         subtasks.clear();
+        epicSubtasks.clear();
     }
 
     @Override
     public Optional<Epic> getEpicById(long id) {
-        if (!epics.containsKey(id)) {
+        Epic epic = epics.get(id);
+        if (epic == null) {
             return Optional.empty();
         }
-        historyManager.add(epics.get(id));
-        return Optional.of(epics.get(id));
+        historyManager.add(epic);
+        return Optional.of(epic);
+    }
+
+    @Override
+    public boolean containsEpic(long id) {
+        return epics.containsKey(id);
     }
 
     @Override
     public void removeEpicById(long id) {
         if (epics.containsKey(id)) {
             historyManager.remove(id);
-            ArrayList<Long> subIdList = epics.get(id).getSubtasksIdArray();
-            for (Long subId : subIdList) {
-                if (historyManager.getHistory().contains(subtasks.get(subId))) {
-                    historyManager.remove(subId);
-                }
+            for (Long subId : epicSubtaskIds(id)) {
+                historyManager.remove(subId);
+                subtasks.remove(subId);
+                removeFromPrioritized(subId);
             }
-
-            subtasks.entrySet().removeIf(e -> e.getValue().getEpicId() == id);
+            epicSubtasks.remove(id);
             epics.remove(id);
         }
     }
 
     @Override
     public void createEpic(Epic epic) {
-        epic.setId(taskId);
+        epic.setId(nextId());
         epics.put(epic.getId(), epic);
-        taskId++;
+        epicSubtasks.put(epic.getId(), new EpicSubtasks());
     }
 
     @Override
@@ -154,7 +183,7 @@ public class InMemoryTaskManager implements TaskManager {
     public ArrayList<Subtask> getAllEpicSubtasks(long id) {
         if (epics.containsKey(id)) {
             ArrayList<Subtask> epicsSub = new ArrayList<>();
-            for (Long subId : epics.get(id).getSubtasksIdArray()) {
+            for (Long subId : epicSubtaskIds(id)) {
                 epicsSub.add(subtasks.get(subId));
             }
             return epicsSub;
@@ -173,30 +202,40 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void removeAllSubtasks() {
+        for (Subtask subtask : subtasks.values()) {
+            removeFromPrioritized(subtask.getId());
+        }
+        epicSubtasks.values().forEach(EpicSubtasks::clear);
         for (Epic epic : epics.values()) {
             epic.setSubtasksIdArray(new ArrayList<>());
             checkEpicStartAndEndTime(epic);
         }
         subtasks.clear();
-        prioritizedTasks.removeIf(subtask -> subtask.getType() == Type.SUBTASK);
     }
 
     @Override
     public Optional<Subtask> getSubtaskById(long id) {
-        if (!subtasks.containsKey(id)) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
             return Optional.empty();
         }
-        historyManager.add(subtasks.get(id));
-        return Optional.of(subtasks.get(id));
+        historyManager.add(subtask);
+        return Optional.of(subtask);
+    }
+
+    @Override
+    public boolean containsSubtask(long id) {
+        return subtasks.containsKey(id);
     }
 
     @Override
     public void removeSubtaskById(long id) {
         if (subtasks.containsKey(id)) {
-            Epic epic = epics.get(subtasks.get(id).getEpicId());
-            prioritizedTasks.remove(subtasks.get(id));
+            IndexedTask subtask = removeFromPrioritized(id);
+            Epic epic = epics.get(subtask.getEpicId());
             subtasks.remove(id);
-            epic.getSubtasksIdArray().remove(id);
+            epicSubtasks(epic.getId()).remove(id);
+            removeSubtaskId(epic, id);
             checkEpicStatus(epic);
             checkEpicStartAndEndTime(epic);
             historyManager.remove(id);
@@ -213,13 +252,13 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void createSubtask(Subtask subtask, long epicId) {
         if (epics.containsKey(epicId) && timeIsAvailable(subtask)) {
-            subtask.setId(taskId);
+            subtask.setId(nextId());
             subtask.setEpicId(epicId);
+            IndexedTask key = addToPrioritized(subtask);
             subtasks.put(subtask.getId(), subtask);
-            epics.get(epicId).getSubtasksIdArray().add(subtask.getId());
+            epicSubtasks(epicId).add(key);
+            addSubtaskId(epics.get(epicId), subtask.getId());
             checkEpicStartAndEndTime(epics.get(epicId));
-            prioritizedTasks.add(subtask);
-            taskId++;
         }
     }
 
@@ -237,78 +276,250 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public void updateSubtask(long id, Subtask subtask, Status status) {
-        boolean afterTimeCheck = false;
-        boolean beforeTimeCheck = false;
-        if (subtasks.containsKey(id) && subtask.getStartTime() != null &&
-                subtasks.get(id).getStartTime() != null) {
-            afterTimeCheck = subtask.getStartTime().isAfter(subtasks.get(id).getStartTime()) ||
-                    subtask.getStartTime().equals(subtasks.get(id).getStartTime());
-            beforeTimeCheck = subtask.getEndTime().isBefore(subtasks.get(id).getEndTime()) ||
-                    subtask.getEndTime().equals(subtasks.get(id).getEndTime());
-        }
-        if (subtasks.containsKey(id) && (timeIsAvailable(subtask)
-                || afterTimeCheck && beforeTimeCheck)) {
+        if (subtasks.containsKey(id) && timeIsAvailable(subtask, id)) {
+            long epicId = removeFromPrioritized(id).getEpicId();
+            epicSubtasks(epicId).remove(id);
             subtask.setId(id);
             subtask.setStatus(status);
-            long previousEpicId = subtasks.get(id).getEpicId();
-            subtask.setEpicId(previousEpicId);
+            subtask.setEpicId(epicId);
             subtasks.put(id, subtask);
-            checkEpicStatus(epics.get(subtask.getEpicId()));
-            checkEpicStartAndEndTime(epics.get(subtask.getEpicId()));
-            prioritizedTasks.add(subtask);
+            epicSubtasks(epicId).add(addToPrioritized(subtask));
+            checkEpicStatus(epics.get(epicId));
+            checkEpicStartAndEndTime(epics.get(epicId));
         }
     }
 
     @Override
     public Set<Task> getPrioritizedTasks() {
-        return prioritizedTasks;
+        return new PrioritizedTasks(prioritizedTasks, indexed);
+    }
+
+    @Override
+    public List<Task> getTasksPage(long cursor, int limit) {
+        return page(tasks.tailValues(cursor), limit);
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(long cursor, int limit) {
+        return page(epics.tailValues(cursor), limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(long cursor, int limit) {
+        return page(subtasks.tailValues(cursor), limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksPage(PriorityCursor cursor, int limit) {
+        if (cursor == null) {
+            return page(getPrioritizedTasks(), limit);
+        }
+        IndexedTask last = new IndexedTask(cursor.getStartMinutes(), cursor.getId());
+        return page(new PrioritizedTasks(prioritizedTasks.tailSet(last, false), indexed), limit);
+    }
+
+    @Override
+    public List<Task> findConflicts(LocalDateTime start, LocalDateTime end) {
+        return schedule.findConflicts(start, end);
+    }
+
+    /**
+     * Копирует в страницу не более {@code limit} первых элементов, не обходя остальные.
+     */
+    private static <T> List<T> page(Iterable<T> items, int limit) {
+        List<T> page = new ArrayList<>(Math.min(limit, 64));
+        for (Iterator<T> iterator = items.iterator(); iterator.hasNext() && page.size() < limit; ) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * Порядок списка приоритетов: по времени начала в минутах, задачи без времени в конце, затем по id.
+     */
+    private static int comparePriority(IndexedTask first, IndexedTask second) {
+        long firstStart = first.getStartMinutes();
+        long secondStart = second.getStartMinutes();
+        if (firstStart != secondStart) {
+            if (firstStart == EpochMinutes.NO_TIME) {
+                return 1;
+            }
+            if (secondStart == EpochMinutes.NO_TIME) {
+                return -1;
+            }
+            return Long.compare(firstStart, secondStart);
+        }
+        return Long.compare(first.getId(), second.getId());
+    }
+
+    protected long nextId() {
+        return taskId++;
+    }
+
+    /**
+     * Продолжает выдачу id после наибольшего из восстановленных, чтобы новые задачи не получили id загруженных.
+     */
+    protected void restoreNextId() {
+        long maxId = -1;
+        for (Task task : tasks.values()) {
+            maxId = Math.max(maxId, task.getId());
+        }
+        for (Epic epic : epics.values()) {
+            maxId = Math.max(maxId, epic.getId());
+        }
+        for (Subtask subtask : subtasks.values()) {
+            maxId = Math.max(maxId, subtask.getId());
+        }
+        taskId = Math.max(taskId, maxId + 1);
+    }
+
+    /**
+     * Перестраивает индекс подзадач эпиков по ссылкам подзадач на эпик и приводит к нему списки подзадач эпиков.
+     * Вызывается после восстановления состояния, т.к. сохранённые списки эпиков могут расходиться с подзадачами.
+     */
+    protected void rebuildSubtaskIndex() {
+        epicSubtasks.clear();
+        for (Epic epic : epics.values()) {
+            epicSubtasks.put(epic.getId(), new EpicSubtasks());
+        }
+        subtasks.values().stream()
+                .sorted(Comparator.comparingLong(Task::getId))
+                .filter(subtask -> epicSubtasks.containsKey(subtask.getEpicId()))
+                .forEach(subtask -> epicSubtasks.get(subtask.getEpicId()).add(new IndexedTask(subtask)));
+        for (Epic epic : epics.values()) {
+            epic.setSubtasksIdArray(new ArrayList<>(epicSubtaskIds(epic.getId())));
+        }
+    }
+
+    /**
+     * Добавляет id подзадачи в список подзадач эпика.
+     */
+    protected void addSubtaskId(Epic epic, long subtaskId) {
+        epic.getSubtasksIdArray().add(subtaskId);
+    }
+
+    protected void removeSubtaskId(Epic epic, long subtaskId) {
+        epic.getSubtasksIdArray().remove((Long) subtaskId);
+    }
+
+    private EpicSubtasks epicSubtasks(long epicId) {
+        return epicSubtasks.computeIfAbsent(epicId, key -> new EpicSubtasks());
+    }
+
+    private Set<Long> epicSubtaskIds(long epicId) {
+        EpicSubtasks subtasksOfEpic = epicSubtasks.get(epicId);
+        return subtasksOfEpic == null ? Collections.emptySet() : subtasksOfEpic.getIds();
+    }
+
+    /**
+     * Запоминает снимок задачи с уже назначенным id и добавляет его в список приоритетов и расписание.
+     *
+     * @return Снимок, по которому задача будет удалена из индексов.
+     */
+    protected IndexedTask addToPrioritized(Task task) {
+        IndexedTask key = new IndexedTask(task);
+        indexed.put(key.getId(), key);
+        prioritizedTasks.add(key);
+        schedule.add(key);
+        return key;
+    }
+
+    /**
+     * Удаляет задачу из списка приоритетов и расписания по снимку, сохранённому при добавлении.
+     *
+     * @return Удалённый снимок или null, если задачи с таким id нет в индексах.
+     */
+    protected IndexedTask removeFromPrioritized(long id) {
+        IndexedTask key = indexed.remove(id);
+        if (key != null) {
+            prioritizedTasks.remove(key);
+            schedule.remove(key);
+        }
+        return key;
     }
 
     private boolean timeIsAvailable(Task task) {
         if (task.getStartTime() == null) {
             return true;
         }
-        return getPrioritizedTasks().stream()
-                .filter(createdTask -> createdTask.getStartTime() != null)
-                .allMatch(createdTask -> task.getEndTime().isBefore(createdTask.getStartTime())
-                || task.getStartTime().isAfter(createdTask.getEndTime()));
+        return !schedule.hasConflicts(task);
+    }
+
+    /**
+     * Проверка времени при обновлении: пересечение с предыдущей версией той же задачи не считается конфликтом.
+     *
+     * @param task Новый объект задачи.
+     * @param id Идентификатор обновляемой задачи.
+     * @see #timeIsAvailable(Task)
+     */
+    private boolean timeIsAvailable(Task task, long id) {
+        if (task.getStartTime() == null) {
+            return true;
+        }
+        return !schedule.hasConflicts(task, id);
     }
 
     private void checkEpicStatus(Epic epic) {
-        boolean isCompleted = getAllEpicSubtasks(epic.getId()).stream()
-                .allMatch(task -> task.getStatus().equals(Status.DONE));
-        boolean isInProgress = getAllEpicSubtasks(epic.getId()).stream()
-                .anyMatch(task -> task.getStatus().equals(Status.IN_PROGRESS)
-                        || task.getStatus().equals(Status.DONE));
-        if (isCompleted) {
+        EpicSubtasks subtasksOfEpic = epicSubtasks(epic.getId());
+        if (subtasksOfEpic.isCompleted()) {
             epic.setStatus(Status.DONE);
-        } else if (isInProgress) {
+        } else if (subtasksOfEpic.isInProgress()) {
             epic.setStatus(Status.IN_PROGRESS);
         }
     }
 
     private void checkEpicStartAndEndTime(Epic epic) {
-        List<Subtask> epicSubs = getAllEpicSubtasks(epic.getId());
-        epicSubs.removeIf(subtask -> subtask.getStartTime() == null);
-
-        if (epicSubs.isEmpty()) {
+        EpicSubtasks subtasksOfEpic = epicSubtasks(epic.getId());
+        if (!subtasksOfEpic.hasScheduledSubtasks()) {
             return;
         }
-        int sum = 0;
-        LocalDateTime min = epicSubs.get(0).getStartTime();
-        LocalDateTime max = epicSubs.get(0).getEndTime();
-        for (Subtask subtask : epicSubs) {
-            if (subtask.getStartTime().isBefore(min)) {
-                min = subtask.getStartTime();
-            }
-            if (subtask.getEndTime().isAfter(max)) {
-                max = subtask.getEndTime();
+        epic.setDuration(subtasksOfEpic.getDuration());
+        epic.setStartTime(subtasksOfEpic.getStartTime());
+        epic.setEndTime(subtasksOfEpic.getEndTime());
+    }
+
+    /**
+     * Список приоритетов, видимый снаружи как набор задач. Задачи читаются из снимков,
+     * а проверка вхождения идёт по id, т.к. поля самой задачи могли измениться после добавления.
+     */
+    static final class PrioritizedTasks extends AbstractSet<Task> {
+
+        private final Set<IndexedTask> keys;
+        private final LongMap<IndexedTask> indexed;
+
+        PrioritizedTasks(Set<IndexedTask> keys, LongMap<IndexedTask> indexed) {
+            this.keys = keys;
+            this.indexed = indexed;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            Iterator<IndexedTask> iterator = keys.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Task next() {
+                    return iterator.next().getTask();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Task)) {
+                return false;
             }
-            sum += subtask.getDuration();
+            IndexedTask key = indexed.get(((Task) o).getId());
+            return key != null && key.getTask().equals(o) && keys.contains(key);
         }
-        epic.setDuration(sum);
-        epic.setStartTime(min);
-        epic.setEndTime(max);
     }
-
 }
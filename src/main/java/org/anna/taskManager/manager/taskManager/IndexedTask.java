@@ -0,0 +1,97 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Поля задачи, по которым она разложена по индексам менеджера, запомненные в момент добавления.
+ * Геттеры возвращают сам хранимый объект, и его могут изменить до вызова update или remove,
+ * поэтому индексы упорядочиваются и очищаются по этому снимку, а не по текущим полям задачи.
+ */
+final class IndexedTask {
+
+    private final Task task;
+    private final long id;
+    private final long epicId;
+    private final Type type;
+    private final Status status;
+    private final int duration;
+    private final LocalDateTime startTime;
+    private final long startMinutes;
+    private final long endMinutes;
+
+    IndexedTask(Task task) {
+        this.task = task;
+        id = task.getId();
+        epicId = task instanceof Subtask ? ((Subtask) task).getEpicId() : -1;
+        type = task.getType();
+        status = task.getStatus();
+        duration = task.getDuration();
+        startTime = task.getStartTime();
+        startMinutes = task.getStartMinutes();
+        endMinutes = task.getEndMinutes();
+    }
+
+    /**
+     * Ключ поиска по списку приоритетов без задачи, например для позиции {@link PriorityCursor}.
+     */
+    IndexedTask(long startMinutes, long id) {
+        task = null;
+        this.id = id;
+        epicId = -1;
+        type = null;
+        status = null;
+        duration = 0;
+        startTime = null;
+        this.startMinutes = startMinutes;
+        endMinutes = startMinutes;
+    }
+
+    Task getTask() {
+        return task;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Эпик подзадачи на момент добавления, для остальных задач -1.
+     */
+    long getEpicId() {
+        return epicId;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    int getDuration() {
+        return duration;
+    }
+
+    boolean isScheduled() {
+        return startTime != null;
+    }
+
+    LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    LocalDateTime getEndTime() {
+        return startTime == null ? null : startTime.plusMinutes(duration);
+    }
+
+    long getStartMinutes() {
+        return startMinutes;
+    }
+
+    long getEndMinutes() {
+        return endMinutes;
+    }
+}
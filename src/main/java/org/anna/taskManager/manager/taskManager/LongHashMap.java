@@ -0,0 +1,259 @@
+package org.anna.taskManager.manager.taskManager;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link LongMap} с открытой адресацией без упаковки ключей в Long и без узлов на каждую запись.
+ * <p>
+ * Записи лежат в плотных массивах ключей и значений по возрастанию ключа, а хеш-таблица с линейным
+ * пробированием хранит только номера записей. Поиск, замена и удаление не создают объектов; новые id
+ * выдаются по возрастанию и дописываются в конец за O(1). Ключ меньше последнего вставляется со сдвигом
+ * и перестройкой таблицы за O(n). Удалённая запись остаётся в таблице с пустым значением, поэтому
+ * повторная вставка того же ключа находит её по хешу; такие записи убираются уплотнением, когда их
+ * становится больше, чем живых.
+ */
+class LongHashMap<V> implements LongMap<V> {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int[] index = new int[INITIAL_CAPACITY * 2]; // номер записи + 1, 0 - пустая ячейка
+    private int shift = 64 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY * 2);
+    private int entries; // записи вместе с удалёнными
+    private int size;
+
+    @Override
+    public V get(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : value(index[slot] - 1);
+    }
+
+    @Override
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Значение не может быть null.");
+        }
+        int slot = find(key);
+        if (slot >= 0) {
+            int entry = index[slot] - 1;
+            V previous = value(entry);
+            values[entry] = value;
+            if (previous == null) {
+                size++;
+            }
+            return previous;
+        }
+        if (entries == 0 || key > keys[entries - 1]) {
+            ensureCapacity();
+            keys[entries] = key;
+            values[entries] = value;
+            entries++;
+            size++;
+            link(entries - 1);
+            return null;
+        }
+        int entry = -Arrays.binarySearch(keys, 0, entries, key) - 1;
+        ensureCapacity();
+        System.arraycopy(keys, entry, keys, entry + 1, entries - entry);
+        System.arraycopy(values, entry, values, entry + 1, entries - entry);
+        keys[entry] = key;
+        values[entry] = value;
+        entries++;
+        size++;
+        rehash(index.length);
+        return null;
+    }
+
+    @Override
+    public V remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        int entry = index[slot] - 1;
+        V previous = value(entry);
+        if (previous == null) {
+            return null;
+        }
+        values[entry] = null;
+        size--;
+        if (entry == entries - 1) {
+            while (entries > 0 && values[entries - 1] == null) {
+                entries--;
+                unlink(find(keys[entries]));
+            }
+        } else if (entries - size > size) {
+            compact();
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, entries, null);
+        Arrays.fill(index, 0);
+        entries = 0;
+        size = 0;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator(0);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterable<V> tailValues(long key) {
+        int entry = Arrays.binarySearch(keys, 0, entries, key);
+        int from = entry >= 0 ? entry + 1 : -entry - 1;
+        return () -> new ValueIterator(from);
+    }
+
+    private int home(long key) {
+        return (int) ((key * PHI) >>> shift);
+    }
+
+    /**
+     * @return ячейку таблицы с ключом или -1, если ключа нет.
+     */
+    private int find(long key) {
+        int mask = index.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void link(int entry) {
+        if (entries * 2 > index.length) {
+            rehash(index.length * 2);
+            return;
+        }
+        int mask = index.length - 1;
+        int slot = home(keys[entry]);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = entry + 1;
+    }
+
+    /**
+     * Удаление со сдвигом назад: следующие записи цепочки переезжают в освободившуюся ячейку,
+     * если она не дальше их собственной, поэтому поиск не встречает дыр.
+     */
+    private void unlink(int slot) {
+        int mask = index.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[index[next] - 1]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void ensureCapacity() {
+        if (entries == keys.length) {
+            keys = Arrays.copyOf(keys, entries * 2);
+            values = Arrays.copyOf(values, entries * 2);
+        }
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            if (values[entry] != null) {
+                keys[live] = keys[entry];
+                values[live] = values[entry];
+                live++;
+            }
+        }
+        Arrays.fill(values, live, entries, null);
+        entries = live;
+        rehash(index.length);
+    }
+
+    private void rehash(int length) {
+        while (entries * 2 > length) {
+            length *= 2;
+        }
+        index = new int[length];
+        shift = 64 - Integer.numberOfTrailingZeros(length);
+        int mask = length - 1;
+        for (int entry = 0; entry < entries; entry++) {
+            int slot = home(keys[entry]);
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = entry + 1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int entry) {
+        return (V) values[entry];
+    }
+
+    private class ValueIterator implements Iterator<V> {
+
+        private int entry;
+
+        ValueIterator(int from) {
+            entry = skipRemoved(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entry < entries;
+        }
+
+        @Override
+        public V next() {
+            if (entry >= entries) {
+                throw new NoSuchElementException();
+            }
+            V value = value(entry);
+            entry = skipRemoved(entry + 1);
+            return value;
+        }
+
+        private int skipRemoved(int from) {
+            while (from < entries && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.anna.taskManager.manager.taskManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Список примитивных long без упаковки в Long. Массив растёт удвоением.
+ */
+class LongList {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] values = EMPTY;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+
+    void add(long value) {
+        insert(size, value);
+    }
+
+    void insert(int index, long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+    }
+
+    void removeAt(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+
+    boolean removeValue(long value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    ArrayList<Long> toArrayList() {
+        ArrayList<Long> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+}
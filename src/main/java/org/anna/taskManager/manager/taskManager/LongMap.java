@@ -0,0 +1,38 @@
+package org.anna.taskManager.manager.taskManager;
+
+import java.util.Collection;
+
+/**
+ * Словарь с примитивными ключами long, в котором менеджеры хранят задачи по id.
+ * Значения обходятся в порядке возрастания ключей; {@code null} в качестве значения не допускается.
+ */
+public interface LongMap<V> {
+
+    V get(long key);
+
+    /**
+     * @return предыдущее значение по ключу или {@code null}, если его не было.
+     */
+    V put(long key, V value);
+
+    /**
+     * @return удалённое значение или {@code null}, если ключа не было.
+     */
+    V remove(long key);
+
+    boolean containsKey(long key);
+
+    int size();
+
+    void clear();
+
+    /**
+     * Значения в порядке возрастания ключей.
+     */
+    Collection<V> values();
+
+    /**
+     * Значения с ключами больше {@code key} в порядке возрастания ключей, без копирования.
+     */
+    Iterable<V> tailValues(long key);
+}
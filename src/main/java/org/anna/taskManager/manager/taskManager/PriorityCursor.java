@@ -0,0 +1,58 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.EpochMinutes;
+import org.anna.taskManager.tasks.Task;
+
+/**
+ * Позиция в списке приоритетов: время начала последней задачи страницы в минутах от эпохи и её id.
+ * Курсор хранит сам ключ порядка, а не ссылку на задачу, поэтому остаётся действительным,
+ * если задачу удалили или перенесли: следующая страница начинается с первой задачи после этого ключа.
+ * В запросах передаётся строкой вида {@code startMinutes:id}, у задачи без времени — {@code :id}.
+ */
+public final class PriorityCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final long startMinutes;
+    private final long id;
+
+    public PriorityCursor(long startMinutes, long id) {
+        this.startMinutes = startMinutes;
+        this.id = id;
+    }
+
+    /**
+     * Курсор, указывающий на позицию задачи в списке приоритетов.
+     */
+    public static PriorityCursor after(Task task) {
+        return new PriorityCursor(task.getStartMinutes(), task.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException если строка не в формате {@link #toString()}.
+     */
+    public static PriorityCursor parse(String value) {
+        int separator = value.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Неверный курсор списка приоритетов: " + value);
+        }
+        long startMinutes = separator == 0 ? EpochMinutes.NO_TIME : Long.parseLong(value.substring(0, separator));
+        return new PriorityCursor(startMinutes, Long.parseLong(value.substring(separator + 1)));
+    }
+
+    /**
+     * Время начала в минутах от эпохи или {@link EpochMinutes#NO_TIME} для задачи без времени.
+     */
+    public long getStartMinutes() {
+        return startMinutes;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return (startMinutes == EpochMinutes.NO_TIME ? "" : String.valueOf(startMinutes)) + SEPARATOR + id;
+    }
+}
@@ -0,0 +1,192 @@
+package org.anna.taskManager.manager.taskManager;
+
+import java.util.Arrays;
+
+/**
+ * Расписание {@link CompactTaskManager}: пары из времени начала в минутах от эпохи и id задачи,
+ * упорядоченные по времени начала. Интервалы задач не пересекаются, поэтому время начала уникально.
+ * <p>
+ * Пары хранятся блоками не длиннее {@value #BLOCK_SIZE} в паре примитивных массивов на блок.
+ * Блок находится двоичным поиском по первым временам блоков, а вставка и удаление сдвигают
+ * только хвост одного блока, т.е. стоят O(log n + BLOCK_SIZE) вместо сдвига всего списка.
+ * Заполненный блок делится пополам, опустевший удаляется, поэтому пустых блоков не бывает.
+ */
+final class Schedule {
+
+    static final int BLOCK_SIZE = 256;
+    private static final int INITIAL_BLOCKS = 4;
+
+    private long[][] starts = new long[INITIAL_BLOCKS][];
+    private long[][] ids = new long[INITIAL_BLOCKS][];
+    private int[] sizes = new int[INITIAL_BLOCKS];
+    private int blocks;
+
+    void insert(long start, long id) {
+        if (blocks == 0) {
+            insertBlock(0, new long[BLOCK_SIZE], new long[BLOCK_SIZE], 0);
+        }
+        int block = block(start);
+        if (sizes[block] == BLOCK_SIZE) {
+            split(block);
+            if (start >= starts[block + 1][0]) {
+                block++;
+            }
+        }
+        int offset = offset(block, start);
+        int tail = sizes[block] - offset;
+        System.arraycopy(starts[block], offset, starts[block], offset + 1, tail);
+        System.arraycopy(ids[block], offset, ids[block], offset + 1, tail);
+        starts[block][offset] = start;
+        ids[block][offset] = id;
+        sizes[block]++;
+    }
+
+    /**
+     * Удаляет пару, если по времени {@code start} запланирована именно задача {@code id}.
+     */
+    void remove(long start, long id) {
+        if (blocks == 0) {
+            return;
+        }
+        int block = block(start);
+        int offset = offset(block, start);
+        if (offset == sizes[block] || starts[block][offset] != start || ids[block][offset] != id) {
+            return;
+        }
+        int tail = sizes[block] - offset - 1;
+        System.arraycopy(starts[block], offset + 1, starts[block], offset, tail);
+        System.arraycopy(ids[block], offset + 1, ids[block], offset, tail);
+        if (--sizes[block] == 0) {
+            removeBlock(block);
+        }
+    }
+
+    /**
+     * Позиция первой пары со временем начала не раньше {@code start}.
+     */
+    Position ceiling(long start) {
+        if (blocks == 0) {
+            return new Position(0, 0);
+        }
+        int block = block(start);
+        Position position = new Position(block, offset(block, start));
+        if (position.offset == sizes[block]) {
+            position.next();
+        }
+        return position;
+    }
+
+    /**
+     * Позиция последней пары со временем начала раньше {@code start}; если такой нет, {@link Position#isValid()}
+     * возвращает {@code false}.
+     */
+    Position lower(long start) {
+        Position position = ceiling(start);
+        position.previous();
+        return position;
+    }
+
+    /**
+     * Позиция за последней парой, с которой не начинается ни одна пара.
+     */
+    Position end() {
+        return new Position(blocks, 0);
+    }
+
+    /**
+     * Номер блока, в который попадает время: последний блок, первое время которого не позже {@code start},
+     * или первый блок.
+     */
+    private int block(long start) {
+        int low = 1;
+        int high = blocks;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle][0] <= start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    private int offset(int block, long start) {
+        int offset = Arrays.binarySearch(starts[block], 0, sizes[block], start);
+        return offset >= 0 ? offset : -offset - 1;
+    }
+
+    private void split(int block) {
+        int half = BLOCK_SIZE / 2;
+        long[] upperStarts = new long[BLOCK_SIZE];
+        long[] upperIds = new long[BLOCK_SIZE];
+        System.arraycopy(starts[block], half, upperStarts, 0, BLOCK_SIZE - half);
+        System.arraycopy(ids[block], half, upperIds, 0, BLOCK_SIZE - half);
+        sizes[block] = half;
+        insertBlock(block + 1, upperStarts, upperIds, BLOCK_SIZE - half);
+    }
+
+    private void insertBlock(int block, long[] blockStarts, long[] blockIds, int size) {
+        if (blocks == sizes.length) {
+            starts = Arrays.copyOf(starts, blocks * 2);
+            ids = Arrays.copyOf(ids, blocks * 2);
+            sizes = Arrays.copyOf(sizes, blocks * 2);
+        }
+        System.arraycopy(starts, block, starts, block + 1, blocks - block);
+        System.arraycopy(ids, block, ids, block + 1, blocks - block);
+        System.arraycopy(sizes, block, sizes, block + 1, blocks - block);
+        starts[block] = blockStarts;
+        ids[block] = blockIds;
+        sizes[block] = size;
+        blocks++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(starts, block + 1, starts, block, blocks - block - 1);
+        System.arraycopy(ids, block + 1, ids, block, blocks - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block, blocks - block - 1);
+        blocks--;
+        starts[blocks] = null;
+        ids[blocks] = null;
+    }
+
+    /**
+     * Позиция пары в расписании. Действительна до следующего изменения расписания.
+     */
+    final class Position {
+
+        private int block;
+        private int offset;
+
+        private Position(int block, int offset) {
+            this.block = block;
+            this.offset = offset;
+        }
+
+        boolean isValid() {
+            return block >= 0 && block < blocks;
+        }
+
+        long getStart() {
+            return starts[block][offset];
+        }
+
+        long getId() {
+            return ids[block][offset];
+        }
+
+        void next() {
+            if (++offset >= sizes[block]) {
+                block++;
+                offset = 0;
+            }
+        }
+
+        private void previous() {
+            if (--offset < 0) {
+                block--;
+                offset = block >= 0 ? sizes[block] - 1 : 0;
+            }
+        }
+    }
+}
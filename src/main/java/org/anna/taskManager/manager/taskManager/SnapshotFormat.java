@@ -0,0 +1,177 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.anna.taskManager.tasks.EpochMinutes.fromEpochMinutes;
+
+/**
+ * Двоичный формат снимка и журнала FileBackedTasksManager.
+ * <p>
+ * Снимок: заголовок (магическое число, версия), число записей, записи задач, число элементов истории
+ * и их идентификаторы. Журнал: заголовок и изменения — байт операции, затем запись задачи,
+ * тип и идентификатор (удаление и просмотр) или тип (очистка). Запись задачи предваряется своей длиной, поэтому её можно пропустить не разбирая.
+ * Журнал просмотров: заголовок и идентификаторы просмотренных задач по 8 байт в порядке просмотра.
+ * <p>
+ * Строки хранятся в UTF-8 с длиной в байтах (-1 для null). Время хранится в минутах от эпохи (UTC),
+ * т.е. с той же точностью, что и продолжительность задач.
+ */
+final class SnapshotFormat {
+
+    static final int SNAPSHOT_MAGIC = 0x544D534E;
+    static final int JOURNAL_MAGIC = 0x544D4A4C;
+    static final int VIEWS_MAGIC = 0x544D5657;
+    static final short VERSION = 1;
+
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
+    private static final Change.Operation[] OPERATIONS = Change.Operation.values();
+
+    private SnapshotFormat() {}
+
+    static void writeHeader(DataOutputStream out, int magic) throws IOException {
+        out.writeInt(magic);
+        out.writeShort(VERSION);
+    }
+
+    /**
+     * Проверяет заголовок и переводит буфер за него.
+     *
+     * @return {@code false}, если буфер начинается не с заголовка данного формата; позиция буфера не меняется.
+     */
+    static boolean readHeader(ByteBuffer buffer, int magic) throws IOException {
+        if (buffer.remaining() < Integer.BYTES || buffer.getInt(buffer.position()) != magic) {
+            return false;
+        }
+        buffer.getInt();
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия формата: " + version);
+        }
+        return true;
+    }
+
+    static void writeTask(DataOutputStream out, Task task) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(task.getType().ordinal());
+        record.writeLong(task.getId());
+        record.writeByte(task.getStatus().ordinal());
+        record.writeInt(task.getDuration());
+        record.writeLong(task.getStartMinutes());
+        writeString(record, task.getTitle());
+        writeString(record, task.getDescription());
+        if (task instanceof Subtask) {
+            record.writeLong(((Subtask) task).getEpicId());
+        } else if (task instanceof Epic) {
+            Epic epic = (Epic) task;
+            record.writeLong(epic.getEndMinutes());
+            record.writeInt(epic.getSubtasksIdArray().size());
+            for (Long id : epic.getSubtasksIdArray()) {
+                record.writeLong(id);
+            }
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    static Task readTask(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int end = buffer.position() + length;
+        Type type = TYPES[buffer.get()];
+        long id = buffer.getLong();
+        Status status = STATUSES[buffer.get()];
+        int duration = buffer.getInt();
+        LocalDateTime startTime = fromEpochMinutes(buffer.getLong());
+        String title = readString(buffer);
+        String description = readString(buffer);
+        Task task;
+        switch (type) {
+            case SUBTASK:
+                Subtask subtask = new Subtask(title, description, duration, startTime);
+                subtask.setEpicId(buffer.getLong());
+                task = subtask;
+                break;
+            case EPIC:
+                Epic epic = new Epic(title, description);
+                epic.setDuration(duration);
+                epic.setStartTime(startTime);
+                epic.setEndTime(fromEpochMinutes(buffer.getLong()));
+                int count = buffer.getInt();
+                ArrayList<Long> subtaskIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    subtaskIds.add(buffer.getLong());
+                }
+                epic.setSubtasksIdArray(subtaskIds);
+                task = epic;
+                break;
+            default:
+                task = new Task(title, description, duration, startTime);
+                break;
+        }
+        task.setId(id);
+        task.setStatus(status);
+        buffer.position(end);
+        return task;
+    }
+
+    static void writeChange(DataOutputStream out, Change change) throws IOException {
+        out.writeByte(change.getOperation().ordinal());
+        switch (change.getOperation()) {
+            case PUT:
+                writeTask(out, change.getTask());
+                break;
+            case REMOVE:
+            case VIEW:
+                out.writeByte(change.getType().ordinal());
+                out.writeLong(change.getId());
+                break;
+            case CLEAR:
+                out.writeByte(change.getType().ordinal());
+                break;
+        }
+    }
+
+    /**
+     * Читает очередное изменение журнала.
+     *
+     * @throws java.nio.BufferUnderflowException если журнал обрывается на середине записи.
+     */
+    static Change readChange(ByteBuffer buffer) {
+        switch (OPERATIONS[buffer.get()]) {
+            case PUT:
+                return Change.put(readTask(buffer));
+            case REMOVE:
+                return Change.remove(TYPES[buffer.get()], buffer.getLong());
+            case VIEW:
+                return Change.view(TYPES[buffer.get()], buffer.getLong());
+            default:
+                return Change.clear(TYPES[buffer.get()]);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,9 @@
 package org.anna.taskManager.manager.taskManager;
 
+import org.anna.taskManager.manager.historyManager.HistoryPage;
 import org.anna.taskManager.tasks.*;
+
+import java.time.LocalDateTime;
 import java.util.*;
 
 public interface TaskManager {
@@ -11,6 +14,11 @@ public interface TaskManager {
 
     Optional<Task> getTaskById(long id);
 
+    /**
+     * Проверяет наличие задачи с указанным id. В отличие от getTaskById, не добавляет её в историю просмотров.
+     */
+    boolean containsTask(long id);
+
     void removeTaskById(long id);
 
     void createTask(Task task);
@@ -23,6 +31,11 @@ public interface TaskManager {
 
     Optional<Epic> getEpicById(long id);
 
+    /**
+     * Проверяет наличие эпика с указанным id. В отличие от getEpicById, не добавляет его в историю просмотров.
+     */
+    boolean containsEpic(long id);
+
     void removeEpicById(long id);
 
     void createEpic(Epic epic);
@@ -37,6 +50,11 @@ public interface TaskManager {
 
     Optional<Subtask> getSubtaskById(long id);
 
+    /**
+     * Проверяет наличие подзадачи с указанным id. В отличие от getSubtaskById, не добавляет её в историю просмотров.
+     */
+    boolean containsSubtask(long id);
+
     void removeSubtaskById(long id);
 
     void createSubtask(Subtask subtask, long epicId);
@@ -45,5 +63,56 @@ public interface TaskManager {
 
     List<Task> getHistoryManager();
 
+    /**
+     * Возвращает страницу истории просмотров от самого давнего просмотра к последнему.
+     *
+     * @param cursor {@link HistoryPage#getCursor()} предыдущей страницы; {@code -1} для первой страницы.
+     *               Курсор — номер просмотра, а не id задачи, поэтому он остаётся действительным,
+     *               даже если задачу удалили, просмотрели снова или вытеснили из истории.
+     * @param limit Наибольшее число задач на странице.
+     */
+    HistoryPage getHistoryPage(long cursor, int limit);
+
     Set<Task> getPrioritizedTasks();
+
+    /**
+     * Возвращает страницу задач в порядке возрастания id.
+     *
+     * @param cursor Id последней задачи предыдущей страницы; {@code -1} для первой страницы.
+     * @param limit Наибольшее число задач на странице.
+     */
+    List<Task> getTasksPage(long cursor, int limit);
+
+    /**
+     * Возвращает страницу эпиков в порядке возрастания id.
+     *
+     * @param cursor Id последнего эпика предыдущей страницы; {@code -1} для первой страницы.
+     * @param limit Наибольшее число эпиков на странице.
+     */
+    List<Epic> getEpicsPage(long cursor, int limit);
+
+    /**
+     * Возвращает страницу подзадач в порядке возрастания id.
+     *
+     * @param cursor Id последней подзадачи предыдущей страницы; {@code -1} для первой страницы.
+     * @param limit Наибольшее число подзадач на странице.
+     */
+    List<Subtask> getSubtasksPage(long cursor, int limit);
+
+    /**
+     * Возвращает страницу задач и подзадач в порядке {@link #getPrioritizedTasks()}.
+     *
+     * @param cursor Позиция последней задачи предыдущей страницы; {@code null} для первой страницы.
+     *               Задача курсора может быть уже удалена или перенесена: страница продолжается после её позиции.
+     * @param limit Наибольшее число задач на странице.
+     */
+    List<Task> getPrioritizedTasksPage(PriorityCursor cursor, int limit);
+
+    /**
+     * Возвращает задачи, время выполнения которых пересекается с указанным интервалом.
+     *
+     * @param start Время начала интервала.
+     * @param end Время окончания интервала.
+     */
+    List<Task> findConflicts(LocalDateTime start, LocalDateTime end);
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package org.anna.taskManager.manager.taskManager;
+
+import org.anna.taskManager.tasks.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Индекс запланированных задач, упорядоченный по времени начала в минутах от эпохи.
+ * Менеджер не допускает пересечений по времени, поэтому интервалы в индексе не перекрываются,
+ * время начала у каждой задачи своё, и для проверки нового интервала достаточно посмотреть на ближайших соседей.
+ * Задачи хранятся снимками {@link IndexedTask}, поэтому изменение объекта задачи после добавления
+ * не нарушает порядок индекса и не мешает удалению.
+ */
+class TimeIntervalIndex {
+
+    private static final long NO_ID = -1;
+
+    private final NavigableMap<Long, IndexedTask> tasksByStartTime = new TreeMap<>();
+
+    void add(IndexedTask task) {
+        if (task.isScheduled()) {
+            tasksByStartTime.put(task.getStartMinutes(), task);
+        }
+    }
+
+    void remove(IndexedTask task) {
+        if (task.isScheduled()) {
+            tasksByStartTime.remove(task.getStartMinutes(), task);
+        }
+    }
+
+    void clear() {
+        tasksByStartTime.clear();
+    }
+
+    /**
+     * Проверяет, пересекается ли интервал задачи с какой-либо задачей из индекса, за O(log n).
+     * Границы интервалов включаются: задача, начинающаяся в момент окончания другой, считается пересечением.
+     */
+    boolean hasConflicts(Task task) {
+        return hasConflicts(task, NO_ID);
+    }
+
+    /**
+     * То же, что {@link #hasConflicts(Task)}, но пересечение с задачей {@code ignoredId} не считается конфликтом.
+     */
+    boolean hasConflicts(Task task, long ignoredId) {
+        long start = task.getStartMinutes();
+        long end = task.getEndMinutes();
+        Map.Entry<Long, IndexedTask> previous = tasksByStartTime.lowerEntry(start);
+        if (previous != null && previous.getValue().getEndMinutes() >= start
+                && previous.getValue().getId() != ignoredId) {
+            return true;
+        }
+        if (end < start) {
+            return false;
+        }
+        for (IndexedTask next : tasksByStartTime.subMap(start, true, end, true).values()) {
+            if (next.getId() != ignoredId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает задачи, пересекающиеся с интервалом, в порядке времени начала.
+     * Просматривается только предыдущий сосед и задачи, начинающиеся внутри интервала.
+     */
+    List<Task> findConflicts(LocalDateTime start, LocalDateTime end) {
+        long startMinutes = EpochMinutes.toEpochMinutes(start);
+        long endMinutes = EpochMinutes.toEpochMinutes(end);
+        List<Task> conflicts = new ArrayList<>();
+        Map.Entry<Long, IndexedTask> previous = tasksByStartTime.lowerEntry(startMinutes);
+        if (previous != null && previous.getValue().getEndMinutes() >= startMinutes) {
+            conflicts.add(previous.getValue().getTask());
+        }
+        if (startMinutes <= endMinutes) {
+            for (IndexedTask next : tasksByStartTime.subMap(startMinutes, true, endMinutes, true).values()) {
+                conflicts.add(next.getTask());
+            }
+        }
+        return conflicts;
+    }
+}
@@ -5,7 +5,8 @@ import java.util.ArrayList;
 
 public class Epic extends Task {
 
-    private ArrayList<Long> subtasksIdArray;
+    // volatile: ConcurrentTaskManager заменяет список целиком, и читатели без блокировок видят его полностью
+    private volatile ArrayList<Long> subtasksIdArray;
     private LocalDateTime endTime;
 
     public Epic(String title, String description) {
@@ -29,6 +30,12 @@ public class Epic extends Task {
 
     public void setEndTime(LocalDateTime endTime) {
         this.endTime = endTime;
+        resetCachedTime();
+    }
+
+    @Override
+    protected long computeEndMinutes(long startMinutes) {
+        return EpochMinutes.toEpochMinutes(endTime);
     }
 
     @Override
@@ -0,0 +1,30 @@
+package org.anna.taskManager.tasks;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Время задач в минутах от начала эпохи по UTC. В минутах задачи упорядочиваются и проверяются
+ * на пересечения, а LocalDateTime создаётся только при выдаче времени наружу.
+ */
+public final class EpochMinutes {
+
+    /**
+     * Значение для задачи без времени начала.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private EpochMinutes() {
+    }
+
+    /**
+     * @return минуты от начала эпохи с отброшенными секундами или {@link #NO_TIME}, если времени нет.
+     */
+    public static long toEpochMinutes(LocalDateTime time) {
+        return time == null ? NO_TIME : Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    public static LocalDateTime fromEpochMinutes(long minutes) {
+        return minutes == NO_TIME ? null : LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+}
@@ -12,6 +12,11 @@ public class Task {
     protected Type type;
     protected int duration;
     protected LocalDateTime startTime;
+    // Время в минутах от эпохи для упорядочивания и проверки пересечений; не сериализуется и
+    // вычисляется при первом обращении, т.к. Gson создаёт объекты без вызова конструктора.
+    private transient long startMinutes;
+    private transient long endMinutes;
+    private transient volatile boolean timeCached;
 
     public Task(String title, String description, int duration, LocalDateTime startTime) {
         this.title = title;
@@ -68,6 +73,7 @@ public class Task {
 
     public void setDuration(int duration) {
         this.duration = duration;
+        timeCached = false;
     }
 
     public LocalDateTime getStartTime() {
@@ -76,12 +82,48 @@ public class Task {
 
     public void setStartTime(LocalDateTime startTime) {
         this.startTime = startTime;
+        timeCached = false;
     }
 
     public LocalDateTime getEndTime() {
         return (startTime == null) ? null : startTime.plusMinutes(duration);
     }
 
+    /**
+     * @return время начала в минутах от эпохи или {@link EpochMinutes#NO_TIME}, если задача не запланирована.
+     */
+    public long getStartMinutes() {
+        if (!timeCached) {
+            cacheTime();
+        }
+        return startMinutes;
+    }
+
+    /**
+     * @return время окончания в минутах от эпохи или {@link EpochMinutes#NO_TIME}, если задача не запланирована.
+     */
+    public long getEndMinutes() {
+        if (!timeCached) {
+            cacheTime();
+        }
+        return endMinutes;
+    }
+
+    protected long computeEndMinutes(long startMinutes) {
+        return startMinutes == EpochMinutes.NO_TIME ? EpochMinutes.NO_TIME : startMinutes + duration;
+    }
+
+    protected void resetCachedTime() {
+        timeCached = false;
+    }
+
+    private void cacheTime() {
+        long start = EpochMinutes.toEpochMinutes(startTime);
+        startMinutes = start;
+        endMinutes = computeEndMinutes(start);
+        timeCached = true;
+    }
+
     @Override
     public String toString() {
         return "Task{" +
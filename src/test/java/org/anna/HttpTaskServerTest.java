@@ -4,6 +4,9 @@ import com.google.gson.Gson;
 import com.google.gson.JsonParser;
 import org.anna.server.HttpTaskServer;
 import org.anna.server.KVServer;
+import org.anna.server.ServerExecutors;
+import org.anna.taskManager.manager.taskManager.ConcurrentTaskManager;
+import org.anna.taskManager.manager.taskManager.InMemoryTaskManager;
 import org.anna.taskManager.tasks.*;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,8 +15,12 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -698,4 +705,121 @@ public class HttpTaskServerTest {
         assertEquals(405, response.statusCode());
         assertEquals("Запрос с используемым методом невозможно обработать.", response.body());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test42_shouldServeSecondRequestWhileHandlerIsBlockedOnWorkerPool() throws Exception {
+        // Given
+        server.stop();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server = new HttpTaskServer(new ConcurrentTaskManager() {
+            @Override
+            public ArrayList<Task> getListOfTasks() {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getListOfTasks();
+            }
+        }, ServerExecutors.fixedPool(2));
+        CompletableFuture<HttpResponse<String>> blocked = client.sendAsync(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/task")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(entered.await(5, TimeUnit.SECONDS), "Первый запрос не дошёл до обработчика.");
+        // When
+        HttpResponse<String> second;
+        try {
+            second = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/epic")).timeout(Duration.ofSeconds(5)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+        } finally {
+            release.countDown();
+        }
+        // Then
+        assertEquals(200, second.statusCode(), "Второй запрос не обработан, пока первый ждёт.");
+        assertEquals(200, blocked.get(5, TimeUnit.SECONDS).statusCode(), "Первый запрос не обработан.");
+    }
+
+    @Test
+    public void test43_shouldReturnTasksPageWithNextCursor()
+            throws IOException, InterruptedException {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            server.getManager().createTask(new Task("Прогулка с собакой " + i, "Поводок за дверью"));
+        }
+        // When
+        HttpResponse<String> first = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/task?limit=2")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        String cursor = first.headers().firstValue("Next-Cursor").orElseThrow();
+        HttpResponse<String> last = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/task?limit=2&cursor=" + cursor)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> wrongLimit = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/?limit=0")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        // Then
+        assertEquals(200, first.statusCode());
+        assertEquals(2, JsonParser.parseString(first.body()).getAsJsonArray().size());
+        assertEquals(200, last.statusCode());
+        assertEquals(1, JsonParser.parseString(last.body()).getAsJsonArray().size());
+        assertTrue(last.headers().firstValue("Next-Cursor").isEmpty());
+        assertEquals(400, wrongLimit.statusCode());
+    }
+
+    @Test
+    public void test44_shouldContinuePrioritizedPageAfterRemovedCursorTask()
+            throws IOException, InterruptedException {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            server.getManager().createTask(new Task("Прогулка с собакой " + i, "Поводок за дверью", 30,
+                    LocalDateTime.of(2022, Month.APRIL, 27, 8 + i, 0)));
+        }
+        HttpResponse<String> first = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/?limit=2")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        String cursor = first.headers().firstValue("Next-Cursor").orElseThrow();
+        // When
+        server.getManager().removeTaskById(1);
+        HttpResponse<String> last = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/?limit=2&cursor=" + cursor)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> wrongCursor = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/?limit=2&cursor=1")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        // Then
+        assertEquals(200, last.statusCode());
+        assertEquals(2, JsonParser.parseString(last.body()).getAsJsonArray().get(0).getAsJsonObject()
+                .get("id").getAsLong());
+        assertEquals(400, wrongCursor.statusCode());
+    }
+
+    @Test
+    public void test45_shouldReturn500WhenTaskListCannotBeSerialized()
+            throws IOException, InterruptedException {
+        // Given
+        server.stop();
+        server = new HttpTaskServer(new InMemoryTaskManager() {
+            @Override
+            public ArrayList<Task> getListOfTasks() {
+                return new UnreadableTaskList();
+            }
+        }, null);
+        // When
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/task")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        // Then
+        assertEquals(500, response.statusCode(), "Ошибка сериализации отправлена со статусом 200.");
+    }
+
+    private static class UnreadableTaskList extends ArrayList<Task> {
+
+        @Override
+        public Iterator<Task> iterator() {
+            throw new IllegalStateException("Список задач недоступен.");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.anna;
+
+import org.anna.server.KVStore;
+import org.anna.server.LogStructuredKVStore;
+import org.anna.server.LogStructuredKVStore.FsyncPolicy;
+import org.anna.server.VersionedValue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogStructuredKVStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @DisplayName("GIVEN a store with saved, overwritten and removed keys " +
+            "WHEN the store is closed and opened again on the same directory " +
+            "THEN the key directory is restored from the segments")
+    @Test
+    public void test1_shouldRestoreKeysAfterReopen() throws IOException {
+        // Given
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.ALWAYS, 0)) {
+            store.put("tasks/1", "[1]");
+            store.put("tasks/2", "[2]");
+            store.put("tasks/1", "[1, 1]");
+            store.remove("tasks/2");
+            Map<String, String> batch = new HashMap<>();
+            batch.put("epics/3", "[3]");
+            batch.put("epics/4", "[4]");
+            batch.put("tasks/5", null);
+            store.putAll(batch);
+            store.removeRange("epics/4");
+        }
+        // When
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.ALWAYS, 0)) {
+            // Then
+            assertEquals("[1, 1]", store.get("tasks/1"), "Значения не совпадают.");
+            assertNull(store.get("tasks/2"), "Удалённый ключ восстановлен.");
+            assertEquals(Map.of("epics/3", "[3]"), store.range("epics/"), "Неверные ключи по префиксу.");
+            assertTrue(store.getLiveBytes() < store.getTotalBytes(), "Устаревшие записи считаются живыми.");
+        }
+    }
+
+    @DisplayName("GIVEN a store with small segments and many overwritten keys " +
+            "WHEN the store is compacted and opened again " +
+            "THEN old segments are replaced by one with live values only and all keys keep their last values")
+    @Test
+    public void test2_shouldDropStaleRecordsOnCompaction() throws IOException {
+        // Given
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.NEVER, 0, 1024,
+                Long.MAX_VALUE)) {
+            for (int round = 0; round < 20; round++) {
+                for (int key = 0; key < 10; key++) {
+                    store.put("key/" + key, "[" + round + "]");
+                }
+            }
+            store.remove("key/9");
+            long totalBefore = store.getTotalBytes();
+            int segmentsBefore = segmentFiles().size();
+            // When
+            store.compact();
+            store.put("key/0", "[20]");
+            // Then
+            assertTrue(segmentsBefore > 2, "Сегменты не сменялись по размеру.");
+            assertEquals(2, segmentFiles().size(), "Старые сегменты не удалены.");
+            assertTrue(store.getTotalBytes() < totalBefore / 10, "Устаревшие записи не удалены.");
+            assertEquals("[19]", store.get("key/5"), "Значения не совпадают.");
+        }
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory)) {
+            assertEquals(9, store.range("key/").size(), "Неверное количество ключей.");
+            assertEquals("[20]", store.get("key/0"), "Значения не совпадают.");
+            assertNull(store.get("key/9"), "Удалённый ключ восстановлен.");
+        }
+    }
+
+    @DisplayName("GIVEN a store whose last segment ends with a torn record " +
+            "WHEN the store is opened again " +
+            "THEN the records before the torn one are restored and new writes succeed")
+    @Test
+    public void test3_shouldIgnoreTornRecordOnRecovery() throws IOException {
+        // Given
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.ALWAYS, 0)) {
+            store.put("tasks/1", "[1]");
+            store.put("tasks/2", "[2]");
+        }
+        Path segment = segmentFiles().get(segmentFiles().size() - 1);
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 2));
+        Files.write(segment, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        // When
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.ALWAYS, 0)) {
+            store.put("tasks/3", "[3]");
+            // Then
+            assertEquals("[1]", store.get("tasks/1"), "Значения не совпадают.");
+            assertNull(store.get("tasks/2"), "Восстановлена оборванная запись.");
+            assertEquals("[3]", store.get("tasks/3"), "Новая запись не сохранена.");
+        }
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(Set.of("tasks/1", "tasks/3"), store.range("tasks/").keySet(), "Неверные ключи.");
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".seg")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @DisplayName("GIVEN a store with versioned keys " +
+            "WHEN keys are written with compare-and-set, removed, compacted and the store is opened again " +
+            "THEN versions keep growing, stale versions are rejected and removed keys do not reuse old versions")
+    @Test
+    public void test4_shouldKeepVersionsAcrossCompactionAndReopen() throws IOException {
+        // Given
+        long removedVersion;
+        long keptVersion;
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.NEVER, 0)) {
+            long created = store.compareAndSet("tasks/1", KVStore.NO_VERSION, "[1]");
+            // When
+            long updated = store.compareAndSet("tasks/1", created, "[1, 1]");
+            // Then
+            assertTrue(updated > created, "Версия не выросла.");
+            assertEquals(KVStore.CONFLICT, store.compareAndSet("tasks/1", created, "[0]"),
+                    "Записано значение с устаревшей версией.");
+            assertEquals(KVStore.CONFLICT, store.compareAndSet("tasks/2", updated, "[2]"),
+                    "Создан ключ с неверной версией.");
+            removedVersion = store.put("tasks/2", "[2]");
+            store.remove("tasks/2");
+            keptVersion = store.getVersioned("tasks/1").getVersion();
+            store.compact();
+            assertEquals(updated, keptVersion, "Неверная версия ключа.");
+        }
+        try (LogStructuredKVStore store = new LogStructuredKVStore(directory, FsyncPolicy.NEVER, 0)) {
+            VersionedValue value = store.getVersioned("tasks/1");
+            assertEquals("[1, 1]", value.getValue(), "Значения не совпадают.");
+            assertEquals(keptVersion, value.getVersion(), "Версия не восстановлена.");
+            assertTrue(store.compareAndSet("tasks/2", KVStore.NO_VERSION, "[2]") > removedVersion,
+                    "Версия удалённого ключа выдана повторно.");
+        }
+    }
+}
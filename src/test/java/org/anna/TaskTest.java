@@ -3,6 +3,7 @@ package org.anna;
 import org.anna.server.KVServer;
 import org.anna.taskManager.manager.Managers;
 import org.anna.taskManager.manager.taskManager.TaskManager;
+import org.anna.taskManager.tasks.EpochMinutes;
 import org.anna.taskManager.tasks.Task;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -61,4 +62,28 @@ public class TaskTest {
         assertNull(task.getStartTime(), "Неверное время старта задачи.");
         assertNull(task.getEndTime(), "Неверное время окончания выполнения задачи.");
     }
+
+    @DisplayName("GIVEN a scheduled Task " +
+            "WHEN its start time and duration are changed " +
+            "THEN start and end in epoch minutes follow the new values and match the LocalDateTime getters")
+    @Test
+    public void test3_shouldKeepEpochMinutesInSyncWithStartTimeAndDuration() {
+        // Given
+        LocalDateTime start = LocalDateTime.of(2022, Month.APRIL, 27, 8, 0);
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью, не забыть намордник", 60, start);
+        long startMinutes = task.getStartMinutes();
+        // When
+        task.setStartTime(start.plusHours(1));
+        task.setDuration(30);
+        // Then
+        assertEquals(startMinutes + 60, task.getStartMinutes(), "Неверное время начала в минутах.");
+        assertEquals(startMinutes + 90, task.getEndMinutes(), "Неверное время окончания в минутах.");
+        assertEquals(task.getEndTime(), EpochMinutes.fromEpochMinutes(task.getEndMinutes()),
+                "Время окончания в минутах не совпадает с getEndTime().");
+        // When
+        task.setStartTime(null);
+        // Then
+        assertEquals(EpochMinutes.NO_TIME, task.getStartMinutes(), "У задачи без времени есть время начала.");
+        assertEquals(EpochMinutes.NO_TIME, task.getEndMinutes(), "У задачи без времени есть время окончания.");
+    }
 }
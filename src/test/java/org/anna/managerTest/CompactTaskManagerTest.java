@@ -0,0 +1,284 @@
+package org.anna.managerTest;
+
+import org.anna.taskManager.manager.taskManager.CompactTaskManager;
+import org.anna.taskManager.manager.taskManager.InMemoryTaskManager;
+import org.anna.taskManager.manager.taskManager.PriorityCursor;
+import org.anna.taskManager.manager.taskManager.TaskManager;
+import org.anna.taskManager.tasks.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactTaskManagerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, Month.APRIL, 26, 20, 0);
+
+    private CompactTaskManager manager;
+
+    @BeforeEach
+    public void init() {
+        manager = new CompactTaskManager();
+    }
+
+    @DisplayName("GIVEN a created Task " +
+            "WHEN it is read, updated and removed " +
+            "THEN copies with the stored fields are returned and the history follows the views")
+    @Test
+    public void test1_shouldCreateUpdateAndRemoveTask() {
+        // Given
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью", 60, START);
+        manager.createTask(task);
+        // When
+        Task stored = manager.getTaskById(task.getId()).orElseThrow();
+        manager.updateTask(task.getId(), new Task("Прогулка с собакой", "Взять мяч", 30, START), Status.DONE);
+        Task updated = manager.getTaskById(task.getId()).orElseThrow();
+        // Then
+        assertEquals(task, stored, "Задачи не совпадают.");
+        assertNotSame(task, stored, "Выдан сохранённый объект вместо копии.");
+        assertEquals(START, stored.getStartTime(), "Неверное время начала.");
+        assertEquals(60, stored.getDuration(), "Неверная продолжительность.");
+        assertEquals(Status.DONE, updated.getStatus(), "Неверный статус.");
+        assertEquals("Взять мяч", updated.getDescription(), "Неверное описание.");
+        assertEquals(START.plusMinutes(30), updated.getEndTime(), "Неверное время окончания.");
+        assertEquals(List.of(updated), manager.getHistoryManager(), "Неверная история.");
+        // When
+        manager.removeTaskById(task.getId());
+        // Then
+        assertTrue(manager.getListOfTasks().isEmpty(), "Задача не удалена.");
+        assertTrue(manager.getHistoryManager().isEmpty(), "Задача осталась в истории.");
+        assertTrue(manager.getPrioritizedTasks().isEmpty(), "Задача осталась в списке приоритетов.");
+    }
+
+    @DisplayName("GIVEN an Epic with three scheduled Subtasks " +
+            "WHEN Subtasks are updated and removed " +
+            "THEN the Epic's status, duration, start and end time follow the remaining Subtasks")
+    @Test
+    public void test2_shouldKeepEpicStatusAndTimeUpToDate() {
+        // Given
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createEpic(epic);
+        Subtask first = new Subtask("Авиабилеты", "Рейс без пересадок", 30, START);
+        Subtask second = new Subtask("Гостиница", "Номер с видом на горы", 45, START.plusHours(1));
+        Subtask last = new Subtask("Страховка", "Оформить онлайн", 60, START.plusHours(3));
+        manager.createSubtask(first, epic.getId());
+        manager.createSubtask(second, epic.getId());
+        manager.createSubtask(last, epic.getId());
+        // When
+        Subtask secondDone = new Subtask("Гостиница", "Номер с видом на горы", 45, START.plusHours(1));
+        manager.updateSubtask(second.getId(), secondDone, Status.DONE);
+        manager.removeSubtaskById(first.getId());
+        Epic stored = manager.getEpicById(epic.getId()).orElseThrow();
+        // Then
+        assertEquals(Status.IN_PROGRESS, stored.getStatus(), "Неверный статус эпика.");
+        assertEquals(105, stored.getDuration(), "Неверная продолжительность эпика.");
+        assertEquals(START.plusHours(1), stored.getStartTime(), "Неверное время начала эпика.");
+        assertEquals(START.plusHours(4), stored.getEndTime(), "Неверное время окончания эпика.");
+        assertEquals(List.of(second.getId(), last.getId()), stored.getSubtasksIdArray(),
+                "Неверный список подзадач эпика.");
+        assertEquals(List.of(secondDone, last), manager.getAllEpicSubtasks(epic.getId()),
+                "Неверные подзадачи эпика.");
+        // When
+        manager.removeEpicById(epic.getId());
+        // Then
+        assertTrue(manager.getListOfSubtasks().isEmpty(), "Подзадачи эпика не удалены.");
+        assertTrue(manager.getPrioritizedTasks().isEmpty(), "Подзадачи остались в списке приоритетов.");
+    }
+
+    @DisplayName("GIVEN a scheduled Task " +
+            "WHEN overlapping and adjacent Tasks are created and the Task is moved within its own interval " +
+            "THEN overlapping Tasks are rejected and the Task's own interval is not a conflict")
+    @Test
+    public void test3_shouldRejectOverlappingTasks() {
+        // Given
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью", 60, START);
+        manager.createTask(task);
+        // When
+        manager.createTask(new Task("Звонок курьеру", "Перенос сроков доставки", 30, START.minusMinutes(30)));
+        manager.createTask(new Task("Зарядка", "Десять минут", 10, START.plusMinutes(60)));
+        Task next = new Task("Завтрак", "Овсянка", 10, START.plusMinutes(61));
+        manager.createTask(next);
+        Task moved = new Task("Прогулка с собакой", "Поводок за дверью", 30, START.plusMinutes(15));
+        manager.updateTask(task.getId(), moved, Status.IN_PROGRESS);
+        // Then
+        assertEquals(2, manager.getListOfTasks().size(), "Создана пересекающаяся задача.");
+        assertEquals(Status.IN_PROGRESS, manager.getTaskById(task.getId()).orElseThrow().getStatus(),
+                "Задача не обновлена в пределах своего интервала.");
+        assertEquals(List.of(moved, next), manager.findConflicts(START, START.plusMinutes(61)),
+                "Неверный список пересечений.");
+        assertTrue(manager.findConflicts(START.plusMinutes(46), START.plusMinutes(60)).isEmpty(),
+                "Найдено пересечение в свободном интервале.");
+    }
+
+    @DisplayName("GIVEN Tasks and Subtasks created out of schedule order " +
+            "WHEN they are read page by page from a cursor " +
+            "THEN the pages follow id order and the prioritized order without gaps or repeats")
+    @Test
+    public void test4_shouldReturnPagesFromCursor() {
+        // Given
+        Task late = new Task("Прогулка с собакой", "Поводок за дверью", 30, START.plusHours(2));
+        Task unscheduled = new Task("Купить хлеб", "Бородинский");
+        Task early = new Task("Зарядка", "Десять минут", 10, START);
+        manager.createTask(late);
+        manager.createTask(unscheduled);
+        manager.createTask(early);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createEpic(epic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок", 30, START.plusHours(1));
+        manager.createSubtask(subtask, epic.getId());
+        // When
+        List<Task> firstTasks = manager.getTasksPage(-1, 2);
+        List<Task> lastTasks = manager.getTasksPage(firstTasks.get(1).getId(), 2);
+        List<Task> firstPrioritized = manager.getPrioritizedTasksPage(null, 2);
+        List<Task> lastPrioritized = manager.getPrioritizedTasksPage(PriorityCursor.after(firstPrioritized.get(1)), 5);
+        // Then
+        assertEquals(List.of(late, unscheduled), firstTasks, "Неверная первая страница задач.");
+        assertEquals(List.of(early), lastTasks, "Неверная последняя страница задач.");
+        assertEquals(List.of(epic), manager.getEpicsPage(-1, 10), "Неверная страница эпиков.");
+        assertEquals(List.of(early, subtask), firstPrioritized, "Неверная первая страница приоритетов.");
+        assertEquals(List.of(late, unscheduled), lastPrioritized, "Неверная последняя страница приоритетов.");
+        assertEquals(List.of(early, subtask, late, unscheduled), new ArrayList<>(manager.getPrioritizedTasks()),
+                "Неверный список приоритетов.");
+    }
+
+    @DisplayName("GIVEN a CompactTaskManager and an InMemoryTaskManager " +
+            "WHEN the same random sequence of operations is applied to both " +
+            "THEN both managers hold the same Tasks, Epics, Subtasks, priorities and history")
+    @Test
+    public void test5_shouldMatchInMemoryTaskManagerOnRandomOperations() {
+        // Given
+        TaskManager expected = new InMemoryTaskManager();
+        Random random = new Random(42);
+        // When
+        for (int step = 0; step < 20000; step++) {
+            int operation = random.nextInt(100);
+            long id = random.nextInt(Math.max(1, step / 2 + 1));
+            LocalDateTime startTime = random.nextInt(3) == 0 ? null : START.plusMinutes(random.nextInt(5000));
+            int duration = random.nextInt(40);
+            Status status = Status.values()[random.nextInt(3)];
+            if (operation < 20) {
+                expected.createTask(newTask(Type.TASK, step, startTime, duration));
+                manager.createTask(newTask(Type.TASK, step, startTime, duration));
+            } else if (operation < 25) {
+                expected.createEpic(new Epic("Эпик " + step, "Описание эпика"));
+                manager.createEpic(new Epic("Эпик " + step, "Описание эпика"));
+            } else if (operation < 45) {
+                expected.createSubtask((Subtask) newTask(Type.SUBTASK, step, startTime, duration), id);
+                manager.createSubtask((Subtask) newTask(Type.SUBTASK, step, startTime, duration), id);
+            } else if (operation < 55) {
+                expected.updateTask(id, newTask(Type.TASK, step, startTime, duration), status);
+                manager.updateTask(id, newTask(Type.TASK, step, startTime, duration), status);
+            } else if (operation < 65) {
+                expected.updateSubtask(id, (Subtask) newTask(Type.SUBTASK, step, startTime, duration), status);
+                manager.updateSubtask(id, (Subtask) newTask(Type.SUBTASK, step, startTime, duration), status);
+            } else if (operation < 72) {
+                expected.removeTaskById(id);
+                manager.removeTaskById(id);
+            } else if (operation < 80) {
+                expected.removeSubtaskById(id);
+                manager.removeSubtaskById(id);
+            } else if (operation < 82) {
+                expected.removeEpicById(id);
+                manager.removeEpicById(id);
+            } else if (operation < 90) {
+                expected.getTaskById(id);
+                manager.getTaskById(id);
+            } else if (operation < 95) {
+                expected.getSubtaskById(id);
+                manager.getSubtaskById(id);
+            } else {
+                expected.getEpicById(id);
+                manager.getEpicById(id);
+            }
+        }
+        // Then
+        assertEquals(describe(expected.getListOfTasks()), describe(manager.getListOfTasks()), "Задачи различаются.");
+        assertEquals(describe(expected.getListOfEpics()), describe(manager.getListOfEpics()), "Эпики различаются.");
+        assertEquals(describe(expected.getListOfSubtasks()), describe(manager.getListOfSubtasks()),
+                "Подзадачи различаются.");
+        assertEquals(describe(expected.getPrioritizedTasks()), describe(manager.getPrioritizedTasks()),
+                "Списки приоритетов различаются.");
+        assertEquals(ids(expected.getHistoryManager()), ids(manager.getHistoryManager()), "Истории различаются.");
+    }
+
+    @DisplayName("GIVEN a CompactTaskManager and an InMemoryTaskManager with thousands of scheduled Tasks " +
+            "WHEN Subtasks of a few Epics are created, rescheduled, completed and removed at random " +
+            "THEN Epic statuses and times, priorities and conflicts match in both managers")
+    @Test
+    public void test6_shouldMatchInMemoryTaskManagerOnLargeSchedule() {
+        // Given
+        TaskManager expected = new InMemoryTaskManager();
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            LocalDateTime startTime = START.plusMinutes(random.nextInt(1_000_000));
+            expected.createTask(newTask(Type.TASK, i, startTime, 30));
+            manager.createTask(newTask(Type.TASK, i, startTime, 30));
+        }
+        List<Long> epicIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Epic epic = new Epic("Эпик " + i, "Описание эпика");
+            expected.createEpic(new Epic("Эпик " + i, "Описание эпика"));
+            manager.createEpic(epic);
+            epicIds.add(epic.getId());
+        }
+        List<Long> subtaskIds = new ArrayList<>();
+        // When
+        for (int step = 0; step < 20000; step++) {
+            int operation = random.nextInt(10);
+            LocalDateTime startTime = random.nextInt(5) == 0 ? null : START.plusMinutes(random.nextInt(1_000_000));
+            int duration = random.nextInt(60);
+            if (operation < 4 || subtaskIds.isEmpty()) {
+                long epicId = epicIds.get(random.nextInt(epicIds.size()));
+                Subtask subtask = (Subtask) newTask(Type.SUBTASK, step, startTime, duration);
+                expected.createSubtask((Subtask) newTask(Type.SUBTASK, step, startTime, duration), epicId);
+                manager.createSubtask(subtask, epicId);
+                if (manager.containsSubtask(subtask.getId())) {
+                    subtaskIds.add(subtask.getId());
+                }
+            } else if (operation < 8) {
+                long id = subtaskIds.get(random.nextInt(subtaskIds.size()));
+                Status status = Status.values()[random.nextInt(3)];
+                expected.updateSubtask(id, (Subtask) newTask(Type.SUBTASK, step, startTime, duration), status);
+                manager.updateSubtask(id, (Subtask) newTask(Type.SUBTASK, step, startTime, duration), status);
+            } else {
+                long id = subtaskIds.remove(random.nextInt(subtaskIds.size()));
+                expected.removeSubtaskById(id);
+                manager.removeSubtaskById(id);
+            }
+        }
+        // Then
+        assertEquals(describe(expected.getListOfEpics()), describe(manager.getListOfEpics()), "Эпики различаются.");
+        assertEquals(describe(expected.getListOfSubtasks()), describe(manager.getListOfSubtasks()),
+                "Подзадачи различаются.");
+        assertEquals(describe(expected.getPrioritizedTasks()), describe(manager.getPrioritizedTasks()),
+                "Списки приоритетов различаются.");
+        for (int i = 0; i < 100; i++) {
+            LocalDateTime start = START.plusMinutes(random.nextInt(1_000_000));
+            assertEquals(describe(expected.findConflicts(start, start.plusMinutes(500))),
+                    describe(manager.findConflicts(start, start.plusMinutes(500))), "Пересечения различаются.");
+        }
+    }
+
+    private static Task newTask(Type type, int step, LocalDateTime startTime, int duration) {
+        if (type == Type.SUBTASK) {
+            return startTime == null ? new Subtask("Подзадача " + step, "Описание подзадачи")
+                    : new Subtask("Подзадача " + step, "Описание подзадачи", duration, startTime);
+        }
+        return startTime == null ? new Task("Задача " + step, "Описание задачи")
+                : new Task("Задача " + step, "Описание задачи", duration, startTime);
+    }
+
+    private static List<String> describe(Collection<? extends Task> tasks) {
+        return tasks.stream().map(Object::toString).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(Collection<? extends Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,212 @@
+package org.anna.managerTest;
+
+import org.anna.taskManager.manager.taskManager.ConcurrentTaskManager;
+import org.anna.taskManager.tasks.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTaskManagerTest extends InMemoryTaskManagerTest {
+
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 200;
+
+    @Override
+    @BeforeEach
+    public void init() {
+        manager = new ConcurrentTaskManager();
+    }
+
+    @DisplayName("GIVEN several threads creating Tasks and Subtasks of one Epic at the same time " +
+            "WHEN all threads are finished " +
+            "THEN every object has its own id, nothing is lost and the Epic lists all its Subtasks")
+    @Test
+    public void test1_shouldCreateTasksFromSeveralThreads() throws Exception {
+        // Given
+        Epic epic = new Epic("Переезд", "Собрать вещи");
+        manager.createEpic(epic);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < TASKS_PER_THREAD; j++) {
+                    manager.createTask(new Task("Задача", "Без времени"));
+                    manager.createSubtask(new Subtask("Подзадача", "Без времени"), epic.getId());
+                }
+                return null;
+            }));
+        }
+        // When
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        Set<Long> ids = new HashSet<>();
+        manager.getListOfTasks().forEach(task -> ids.add(task.getId()));
+        manager.getListOfSubtasks().forEach(subtask -> ids.add(subtask.getId()));
+        assertEquals(THREADS * TASKS_PER_THREAD, manager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(2 * THREADS * TASKS_PER_THREAD, ids.size(), "Идентификаторы повторяются.");
+        assertEquals(THREADS * TASKS_PER_THREAD, manager.getAllEpicSubtasks(epic.getId()).size(),
+                "Неверное количество подзадач эпика.");
+    }
+
+    @DisplayName("GIVEN several threads creating Tasks for the same time slot " +
+            "WHEN all threads are finished " +
+            "THEN only one Task is created")
+    @Test
+    public void test2_shouldNotCreateOverlappingTasksFromSeveralThreads() throws Exception {
+        // Given
+        LocalDateTime startTime = LocalDateTime.of(2022, Month.APRIL, 27, 8, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                manager.createTask(new Task("Прогулка с собакой", "Поводок за дверью", 60, startTime));
+                return null;
+            }));
+        }
+        // When
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        assertEquals(1, manager.getListOfTasks().size(), "Создано несколько пересекающихся задач.");
+        assertEquals(1, manager.getPrioritizedTasks().size(), "Неверное количество задач в списке приоритетов.");
+    }
+
+    @DisplayName("GIVEN several threads viewing the same Tasks at the same time " +
+            "WHEN all threads are finished " +
+            "THEN the history holds the last ten unique Tasks")
+    @Test
+    public void test3_shouldKeepHistoryUniqueAndBoundedUnderConcurrentViews() throws Exception {
+        // Given
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Task task = new Task("Задача " + i, "Без времени");
+            manager.createTask(task);
+            tasks.add(task);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < TASKS_PER_THREAD; j++) {
+                    for (Task task : tasks) {
+                        manager.getTaskById(task.getId());
+                    }
+                }
+                return null;
+            }));
+        }
+        // When
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        manager.getTaskById(tasks.get(0).getId());
+        // Then
+        List<Task> history = manager.getHistoryManager();
+        assertEquals(10, history.size(), "Неверный размер истории.");
+        assertEquals(10, new HashSet<>(history).size(), "Задачи в истории повторяются.");
+        assertEquals(tasks.get(0), history.get(9), "Последний просмотр не в конце истории.");
+    }
+
+    @DisplayName("GIVEN threads creating and removing Subtasks of one Epic and threads reading them " +
+            "WHEN all threads are finished " +
+            "THEN readers never fail and every Subtask left is listed once")
+    @Test
+    public void test4_shouldReadEpicSubtasksWhileTheyChange() throws Exception {
+        // Given
+        Epic epic = new Epic("Переезд", "Собрать вещи");
+        manager.createEpic(epic);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean writer = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < TASKS_PER_THREAD; j++) {
+                    if (writer) {
+                        Subtask subtask = new Subtask("Подзадача", "Без времени");
+                        manager.createSubtask(subtask, epic.getId());
+                        if (j % 2 == 0) {
+                            manager.removeSubtaskById(subtask.getId());
+                        }
+                    } else {
+                        manager.getAllEpicSubtasks(epic.getId());
+                        long count = 0;
+                        for (Long id : manager.getListOfEpics().get(0).getSubtasksIdArray()) {
+                            count += id;
+                        }
+                        assertTrue(count >= 0, "Неверный id подзадачи.");
+                    }
+                }
+                return null;
+            }));
+        }
+        // When
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        int expected = THREADS / 2 * TASKS_PER_THREAD / 2;
+        assertEquals(expected, manager.getAllEpicSubtasks(epic.getId()).size(), "Неверное количество подзадач эпика.");
+        assertEquals(expected, new HashSet<>(epic.getSubtasksIdArray()).size(), "Подзадачи эпика повторяются.");
+    }
+
+    @DisplayName("GIVEN threads creating Tasks without time and a thread removing all Tasks " +
+            "WHEN all threads are finished " +
+            "THEN the prioritized list holds exactly the stored Tasks")
+    @Test
+    public void test5_shouldKeepPrioritizedTasksInSyncWithRemoveAll() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean remover = i == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < TASKS_PER_THREAD; j++) {
+                    if (remover) {
+                        manager.removeAllTasks();
+                    } else {
+                        manager.createTask(new Task("Задача", "Без времени"));
+                    }
+                }
+                return null;
+            }));
+        }
+        // When
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        Set<Task> stored = new HashSet<>(manager.getListOfTasks());
+        assertTrue(stored.containsAll(manager.getPrioritizedTasks()), "В списке приоритетов остались удалённые задачи.");
+        assertEquals(stored.size(), manager.getPrioritizedTasks().size(), "Неверное количество задач в списке приоритетов.");
+    }
+}
@@ -4,11 +4,18 @@ import org.anna.taskManager.manager.taskManager.FileBackedTasksManager;
 import org.anna.taskManager.tasks.*;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -89,4 +96,205 @@ public class FileBackedTaskManagerTest extends InMemoryTaskManagerTest {
         assertTrue(loadedManager.getHistoryManager().contains(epic), "Задача не была добавлена в историю.");
         assertEquals(epic, loadedManager.getHistoryManager().get(1), "Неверный порядок отображения задач.");
     }
+
+    @DisplayName("GIVEN a fileManager changed after its first save " +
+            "WHEN the condition is loaded from the file " +
+            "THEN changes written to the journal are replayed over the snapshot")
+    @Test
+    public void test4_shouldReplayJournalOverTheSnapshot(@TempDir Path dir) throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью", 60,
+                LocalDateTime.of(2022, Month.APRIL, 27, 8, 0));
+        fileManager.createTask(task);
+        long snapshotSize = Files.size(Paths.get(path));
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        fileManager.createEpic(epic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 23, 30));
+        fileManager.createSubtask(subtask, epic.getId());
+        Task updatedTask = new Task("Прогулка с собакой", "Взять мяч", 60,
+                LocalDateTime.of(2022, Month.APRIL, 27, 9, 0));
+        fileManager.updateTask(task.getId(), updatedTask, Status.DONE);
+        fileManager.getEpicById(epic.getId());
+        fileManager.getTaskById(task.getId());
+        fileManager.removeSubtaskById(subtask.getId());
+        // When
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // Then
+        assertEquals(snapshotSize, Files.size(Paths.get(path)), "Снимок был перезаписан.");
+        assertEquals(1, loadedManager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(updatedTask, loadedManager.getListOfTasks().get(0), "Задачи не совпадают.");
+        assertEquals(epic, loadedManager.getListOfEpics().get(0), "Задачи не совпадают.");
+        assertTrue(loadedManager.getListOfSubtasks().isEmpty(), "Подзадача не была удалена.");
+        assertTrue(loadedManager.getAllEpicSubtasks(epic.getId()).isEmpty(), "Подзадача не была удалена.");
+        assertEquals(2, loadedManager.getHistoryManager().size(), "Неверное количество задач.");
+        assertEquals(epic, loadedManager.getHistoryManager().get(0), "Неверный порядок отображения задач.");
+        assertEquals(updatedTask, loadedManager.getHistoryManager().get(1), "Неверный порядок отображения задач.");
+        assertEquals(1, loadedManager.getPrioritizedTasks().size(), "Неверное количество задач.");
+    }
+
+    @DisplayName("GIVEN a fileManager with saved tasks " +
+            "WHEN tasks are only read " +
+            "THEN the snapshot and the journal are not written, the views log grows by one id per read, " +
+            "the history is restored on load")
+    @Test
+    public void test5_shouldOnlyAppendViewsToViewsLogOnReads(@TempDir Path dir) throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        Task task = new Task("Звонок курьеру", "Перенос сроков доставки", 10,
+                LocalDateTime.of(2022, Month.APRIL, 27, 14, 0));
+        fileManager.createTask(task);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        fileManager.createEpic(epic);
+        long snapshotModified = Files.getLastModifiedTime(Paths.get(path)).toMillis();
+        long journalSize = Files.size(Paths.get(path + ".journal"));
+        long viewsSize = Files.size(Paths.get(path + ".views"));
+        // When
+        fileManager.getTaskById(task.getId());
+        fileManager.getEpicById(epic.getId());
+        fileManager.getTaskById(task.getId());
+        // Then
+        assertEquals(snapshotModified, Files.getLastModifiedTime(Paths.get(path)).toMillis(),
+                "Снимок был перезаписан.");
+        assertEquals(journalSize, Files.size(Paths.get(path + ".journal")),
+                "Просмотры записаны в журнал изменений.");
+        assertEquals(viewsSize + 3 * Long.BYTES, Files.size(Paths.get(path + ".views")),
+                "В журнал просмотров записано больше, чем просмотры задач.");
+        assertFalse(Files.exists(Paths.get(path + ".history")), "История записана в отдельный файл.");
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        assertEquals(2, loadedManager.getHistoryManager().size(), "Неверное количество задач.");
+        assertEquals(epic, loadedManager.getHistoryManager().get(0), "Неверный порядок отображения задач.");
+        assertEquals(task, loadedManager.getHistoryManager().get(1), "Неверный порядок отображения задач.");
+    }
+
+    @DisplayName("GIVEN a fileManager with an Epic having Subtasks with two-digit ids " +
+            "WHEN the condition is loaded from the file " +
+            "THEN the Epic lists exactly its Subtasks")
+    @Test
+    public void test6_shouldRestoreEpicSubtasksWithTwoDigitIds(@TempDir Path dir) throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        for (int i = 0; i < 10; i++) {
+            fileManager.createTask(new Task("Звонок курьеру", "Перенос сроков доставки", 15,
+                    LocalDateTime.of(2022, Month.APRIL, 27, 8, 0).plusHours(i)));
+        }
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        fileManager.createEpic(epic);
+        fileManager.createSubtask(new Subtask("Авиабилеты", "Рейс без пересадок", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 23, 30)), epic.getId());
+        fileManager.createSubtask(new Subtask("Гостиница", "Номер с видом на горы", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 22, 30)), epic.getId());
+        // When
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // Then
+        assertEquals(epic.getSubtasksIdArray(), loadedManager.getListOfEpics().get(0).getSubtasksIdArray(),
+                "Неверный список подзадач эпика.");
+        assertEquals(fileManager.getAllEpicSubtasks(epic.getId()), loadedManager.getAllEpicSubtasks(epic.getId()),
+                "Неверный список подзадач эпика.");
+    }
+
+    @DisplayName("GIVEN a fileManager with commas in titles, a Task without start time and an incomplete journal record " +
+            "WHEN the condition is loaded from the file " +
+            "THEN all complete changes are restored")
+    @Test
+    public void test7_shouldRestoreTasksWithCommasAndSkipIncompleteJournalRecord(@TempDir Path dir)
+            throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью, не забыть намордник");
+        fileManager.createTask(task);
+        Epic epic = new Epic("Отпуск, горы", "Поездка в горы в декабре");
+        fileManager.createEpic(epic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок, с багажом", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 23, 30));
+        fileManager.createSubtask(subtask, epic.getId());
+        Files.write(Paths.get(path + ".journal"), new byte[] {0, 0, 0}, StandardOpenOption.APPEND);
+        // When
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // Then
+        assertEquals(task, loadedManager.getListOfTasks().get(0), "Задачи не совпадают.");
+        assertNull(loadedManager.getListOfTasks().get(0).getStartTime(), "Неверное время начала задачи.");
+        assertEquals(epic, loadedManager.getListOfEpics().get(0), "Задачи не совпадают.");
+        assertEquals(epic.getStartTime(), loadedManager.getListOfEpics().get(0).getStartTime(),
+                "Неверное время начала эпика.");
+        assertEquals(epic.getEndTime(), loadedManager.getListOfEpics().get(0).getEndTime(),
+                "Неверное время окончания эпика.");
+        assertEquals(subtask, loadedManager.getListOfSubtasks().get(0), "Задачи не совпадают.");
+        assertEquals(subtask.getStartTime(), loadedManager.getListOfSubtasks().get(0).getStartTime(),
+                "Неверное время начала подзадачи.");
+        assertEquals(List.of(subtask), loadedManager.getAllEpicSubtasks(epic.getId()),
+                "Неверный список подзадач эпика.");
+    }
+
+    @DisplayName("GIVEN a fileManager with more Tasks than fit into one decoding chunk " +
+            "WHEN the condition is loaded from the file " +
+            "THEN every Task is restored")
+    @Test
+    public void test8_shouldRestoreLargeStoreDecodedInChunks(@TempDir Path dir) throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        for (int i = 0; i < 20_000; i++) {
+            fileManager.createTask(new Task("Звонок курьеру " + i, "Перенос сроков доставки"));
+        }
+        // When
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // Then
+        assertEquals(20_000, loadedManager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(new HashSet<>(fileManager.getListOfTasks()), new HashSet<>(loadedManager.getListOfTasks()),
+                "Задачи не совпадают.");
+    }
+
+    @DisplayName("GIVEN a fileManager loaded from a file with two Tasks " +
+            "WHEN a new Task is created and the file is loaded again " +
+            "THEN the new Task gets the next id and is saved to the same file")
+    @Test
+    public void test9_shouldContinueIdsAndWriteToTheLoadedFile(@TempDir Path dir) throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        fileManager.createTask(new Task("Прогулка с собакой", "Поводок за дверью"));
+        fileManager.createTask(new Task("Звонок курьеру", "Перенос сроков доставки"));
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // When
+        Task task = new Task("Покупка продуктов", "Молоко и хлеб");
+        loadedManager.createTask(task);
+        FileBackedTasksManager reloadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // Then
+        assertEquals(2, task.getId(), "Новая задача получила id загруженной.");
+        assertEquals(3, reloadedManager.getListOfTasks().size(), "Неверное количество задач.");
+        assertTrue(reloadedManager.getListOfTasks().contains(task), "Новая задача не сохранена в файл.");
+    }
+
+    @DisplayName("GIVEN a loaded fileManager " +
+            "WHEN tasks are read more times than the views log keeps before compaction " +
+            "THEN the snapshot is not written, the views log stays short and the history is restored on load")
+    @Test
+    public void test10_shouldCompactViewsLogWithoutRewritingSnapshot(@TempDir Path dir) throws IOException {
+        // Given
+        String path = dir.resolve("tasks.csv").toString();
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
+        Task first = new Task("Звонок курьеру", "Перенос сроков доставки");
+        fileManager.createTask(first);
+        Task second = new Task("Прогулка с собакой", "Поводок за дверью");
+        fileManager.createTask(second);
+        long snapshotModified = Files.getLastModifiedTime(Paths.get(path)).toMillis();
+        FileBackedTasksManager loadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        // When
+        for (int i = 0; i < 5000; i++) {
+            loadedManager.getTaskById(i % 2 == 0 ? second.getId() : first.getId());
+        }
+        // Then
+        assertEquals(snapshotModified, Files.getLastModifiedTime(Paths.get(path)).toMillis(),
+                "Снимок был перезаписан.");
+        assertTrue(Files.size(Paths.get(path + ".views")) < 2000 * Long.BYTES,
+                "Журнал просмотров не сжимается.");
+        FileBackedTasksManager reloadedManager = FileBackedTasksManager.loadFromFile(new File(path));
+        assertEquals(List.of(second, first), reloadedManager.getHistoryManager(), "Неверный порядок отображения задач.");
+    }
 }
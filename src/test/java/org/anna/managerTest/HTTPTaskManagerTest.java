@@ -1,16 +1,36 @@
 package org.anna.managerTest;
 
+import org.anna.customExceptions.ManagerSaveException;
 import org.anna.server.KVServer;
+import org.anna.server.KVStore;
+import org.anna.server.KVTaskClient;
+import org.anna.server.LogStructuredKVStore;
+import org.anna.server.ServerExecutors;
+import org.anna.server.VersionedValue;
 import org.anna.taskManager.manager.taskManager.HTTPTaskManager;
 import org.anna.taskManager.tasks.*;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -108,4 +128,322 @@ public class HTTPTaskManagerTest extends InMemoryTaskManagerTest {
         assertTrue(loadedManager.getPrioritizedTasks().contains(subtask), "Задача не была добавлена в сет.");
         assertFalse(loadedManager.getPrioritizedTasks().contains(epic), "Эпик был добавлен в сет.");
     }
+
+    @DisplayName("GIVEN an HTTPManager with tasks changed and removed " +
+            "WHEN the condition is loaded from the server " +
+            "THEN each task is stored under its own key, removed tasks are absent")
+    @Test
+    public void test4_shouldStoreEachTaskUnderItsOwnKey() throws IOException, InterruptedException {
+        // Given
+        HTTPTaskManager httpManager = (HTTPTaskManager) manager;
+        Task task = new Task("Звонок курьеру", "Перенос сроков доставки", 10,
+                LocalDateTime.of(2022, Month.APRIL, 27, 14, 0));
+        httpManager.createTask(task);
+        Task removedTask = new Task("Покупка", "В пятёрочке");
+        httpManager.createTask(removedTask);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        httpManager.createEpic(epic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 23, 30));
+        httpManager.createSubtask(subtask, epic.getId());
+        Subtask updatedSubtask = new Subtask("Авиабилеты", "Рейс с пересадкой", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 22, 0));
+        httpManager.updateSubtask(subtask.getId(), updatedSubtask, Status.DONE);
+        httpManager.getTaskById(removedTask.getId());
+        httpManager.removeTaskById(removedTask.getId());
+        // When
+        HTTPTaskManager loadedManager = HTTPTaskManager.loadFromServer("8078");
+        // Then
+        assertFalse(httpManager.getClient().load("task/" + task.getId()).isEmpty(), "Задача не была сохранена.");
+        assertTrue(httpManager.getClient().load("task/" + removedTask.getId()).isEmpty(),
+                "Задача не была удалена.");
+        assertEquals(1, loadedManager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(task, loadedManager.getListOfTasks().get(0), "Задачи не совпадают.");
+        assertEquals(updatedSubtask, loadedManager.getListOfSubtasks().get(0), "Задачи не совпадают.");
+        assertEquals(Status.DONE, loadedManager.getListOfEpics().get(0).getStatus(), "Статус эпика не сохранён.");
+        assertTrue(loadedManager.getHistoryManager().isEmpty(), "История не пуста.");
+        assertEquals(2, loadedManager.getPrioritizedTasks().size(), "Неверное количество задач.");
+    }
+
+    @DisplayName("GIVEN a KVServer with several keys " +
+            "WHEN keys are saved, removed and loaded in batches " +
+            "THEN the batch load returns exact keys and keys matched by the prefix")
+    @Test
+    public void test5_shouldSaveAndLoadKeysInBatches() throws IOException, InterruptedException {
+        // Given
+        KVTaskClient client = new KVTaskClient("8078");
+        Map<String, String> values = new HashMap<>();
+        values.put("a/1", "[1]");
+        values.put("a/2", "[2]");
+        values.put("b/1", "[3]");
+        values.put("c", "[4]");
+        client.putAll(values);
+        Map<String, String> removed = new HashMap<>();
+        removed.put("a/2", null);
+        // When
+        client.putAll(removed);
+        Map<String, String> loaded = client.loadAll(List.of("a/*", "c", "d"));
+        // Then
+        assertEquals(2, loaded.size(), "Неверное количество ключей.");
+        assertEquals("[1]", loaded.get("a/1"), "Значения не совпадают.");
+        assertEquals("[4]", loaded.get("c"), "Значения не совпадают.");
+        assertTrue(client.load("a/2").isEmpty(), "Ключ не был удалён.");
+    }
+
+    @DisplayName("GIVEN an HTTPManager with write-behind " +
+            "WHEN tasks are changed and the manager is flushed " +
+            "THEN changes reach the server only after the flush")
+    @Test
+    public void test6_shouldSendChangesOnFlushInWriteBehindMode() throws IOException, InterruptedException {
+        // Given
+        HTTPTaskManager writeBehindManager = new HTTPTaskManager("8078", 60_000, 1_000);
+        Task task = new Task("Звонок курьеру", "Перенос сроков доставки", 10,
+                LocalDateTime.of(2022, Month.APRIL, 27, 14, 0));
+        writeBehindManager.createTask(task);
+        writeBehindManager.updateTask(task.getId(), new Task("Звонок курьеру", "Перенос на завтра", 10,
+                LocalDateTime.of(2022, Month.APRIL, 27, 15, 0)), Status.IN_PROGRESS);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        writeBehindManager.createEpic(epic);
+        writeBehindManager.removeAllEpics();
+        writeBehindManager.getTaskById(task.getId());
+        assertTrue(HTTPTaskManager.loadFromServer("8078").getListOfTasks().isEmpty(),
+                "Изменения были отправлены до сброса.");
+        // When
+        writeBehindManager.close();
+        // Then
+        HTTPTaskManager loadedManager = HTTPTaskManager.loadFromServer("8078");
+        assertEquals(1, loadedManager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(Status.IN_PROGRESS, loadedManager.getListOfTasks().get(0).getStatus(),
+                "Задача не была обновлена.");
+        assertTrue(loadedManager.getListOfEpics().isEmpty(), "Эпик не был удалён.");
+        assertEquals(1, loadedManager.getHistoryManager().size(), "Неверное количество задач.");
+    }
+
+    @DisplayName("GIVEN a client limited to two requests in flight " +
+            "WHEN many values are saved asynchronously " +
+            "THEN all of them are saved, latency is reported for each request, a rejected request fails")
+    @Test
+    public void test7_shouldSaveValuesAsynchronouslyWithBoundedRequests() throws IOException, InterruptedException {
+        // Given
+        KVTaskClient client = new KVTaskClient("8078", 2);
+        AtomicInteger reported = new AtomicInteger();
+        client.setLatencyListener((path, nanos) -> reported.incrementAndGet());
+        List<CompletableFuture<Void>> puts = new ArrayList<>();
+        // When
+        for (int i = 0; i < 20; i++) {
+            puts.add(client.putAsync("key/" + i, "[" + i + "]"));
+        }
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture[0])).join();
+        // Then
+        assertEquals(20, reported.get(), "Неверное количество запросов.");
+        assertEquals("[7]", client.loadAsync("key/7").join(), "Значения не совпадают.");
+        assertEquals(20, client.loadAllAsync(List.of("key/*")).join().size(), "Неверное количество ключей.");
+        assertThrows(CompletionException.class, () -> client.putAsync("key/0", "").join(),
+                "Запрос с пустым значением не завершился ошибкой.");
+    }
+
+    @DisplayName("GIVEN a KVServer storing data in segment files " +
+            "WHEN tasks are saved and the server is restarted on the same directory " +
+            "THEN the manager loaded from the restarted server has the same tasks and history")
+    @Test
+    public void test8_shouldKeepTasksAcrossKVServerRestartWithLogStructuredStore(@TempDir Path directory)
+            throws IOException, InterruptedException {
+        // Given
+        server.stop();
+        server = new KVServer(null, new LogStructuredKVStore(directory));
+        server.start();
+        HTTPTaskManager persistentManager = new HTTPTaskManager("8078");
+        Task task = new Task("Звонок курьеру", "Перенос сроков доставки", 10,
+                LocalDateTime.of(2022, Month.APRIL, 27, 14, 0));
+        persistentManager.createTask(task);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        persistentManager.createEpic(epic);
+        persistentManager.createSubtask(new Subtask("Авиабилеты", "Рейс без пересадок"), epic.getId());
+        persistentManager.getTaskById(task.getId());
+        persistentManager.close();
+        // When
+        server.stop();
+        server = new KVServer(null, new LogStructuredKVStore(directory));
+        server.start();
+        HTTPTaskManager loadedManager = HTTPTaskManager.loadFromServer("8078");
+        // Then
+        assertEquals(persistentManager.getListOfTasks(), loadedManager.getListOfTasks(), "Задачи не совпадают.");
+        assertEquals(persistentManager.getListOfEpics(), loadedManager.getListOfEpics(), "Эпики не совпадают.");
+        assertEquals(persistentManager.getListOfSubtasks(), loadedManager.getListOfSubtasks(),
+                "Подзадачи не совпадают.");
+        assertEquals(List.of(task), loadedManager.getHistoryManager(), "История не совпадает.");
+    }
+
+    @DisplayName("GIVEN a KVServer with a thread pool and four clients " +
+            "WHEN the clients concurrently increment one counter with compare-and-set and one writes a stale version " +
+            "THEN no increment is lost and the stale write is rejected")
+    @Test
+    public void test9_shouldNotLoseConcurrentUpdatesWithCompareAndSet() throws Exception {
+        // Given
+        server.stop();
+        server = new KVServer(ServerExecutors.fixedPool(4));
+        server.start();
+        KVTaskClient first = new KVTaskClient("8078");
+        long initialVersion = first.compareAndSet("counter", KVStore.NO_VERSION, "0");
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        // When
+        for (int i = 0; i < 4; i++) {
+            KVTaskClient client = new KVTaskClient("8078");
+            results.add(clients.submit(() -> {
+                for (int increment = 0; increment < 25; increment++) {
+                    VersionedValue current;
+                    do {
+                        current = client.loadVersioned("counter");
+                    } while (client.compareAndSet("counter", current.getVersion(),
+                            String.valueOf(Integer.parseInt(current.getValue()) + 1)) == KVStore.CONFLICT);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        clients.shutdown();
+        // Then
+        VersionedValue counter = first.loadVersioned("counter");
+        assertEquals("100", counter.getValue(), "Потеряны изменения.");
+        assertTrue(counter.getVersion() > initialVersion, "Версия не выросла.");
+        assertEquals(KVStore.CONFLICT, first.compareAndSet("counter", initialVersion, "0"),
+                "Записано значение с устаревшей версией.");
+        assertEquals(KVStore.CONFLICT, first.compareAndSet("counter", KVStore.NO_VERSION, "0"),
+                "Существующий ключ создан заново.");
+        assertEquals("100", first.load("counter"), "Значение изменено при конфликте.");
+    }
+
+    @DisplayName("GIVEN an HTTPManager with two Tasks " +
+            "WHEN the Tasks are viewed repeatedly and the condition is loaded from the server " +
+            "THEN each Task keeps one history key and the history order is restored")
+    @Test
+    public void test10_shouldStoreEachViewUnderItsOwnHistoryKey() throws IOException, InterruptedException {
+        // Given
+        HTTPTaskManager httpManager = (HTTPTaskManager) manager;
+        Task first = new Task("Звонок курьеру", "Перенос сроков доставки");
+        httpManager.createTask(first);
+        Task second = new Task("Покупка", "В пятёрочке");
+        httpManager.createTask(second);
+        // When
+        httpManager.getTaskById(first.getId());
+        httpManager.getTaskById(second.getId());
+        httpManager.getTaskById(first.getId());
+        HTTPTaskManager loadedManager = HTTPTaskManager.loadFromServer("8078");
+        // Then
+        assertEquals(2, httpManager.getClient().loadAll(List.of("history/*")).size(),
+                "Неверное количество ключей истории.");
+        assertEquals(List.of(second, first), loadedManager.getHistoryManager(), "История не совпадает.");
+    }
+
+    @DisplayName("GIVEN an HTTPManager with write-behind and a stopped KVServer " +
+            "WHEN all Tasks are removed and the manager is closed " +
+            "THEN the failed range delete is reported")
+    @Test
+    public void test11_shouldReportFailedRangeDeleteInWriteBehindMode() throws IOException, InterruptedException {
+        // Given
+        HTTPTaskManager writeBehindManager = new HTTPTaskManager("8078", 60_000, 1_000);
+        server.stop();
+        // When
+        writeBehindManager.removeAllTasks();
+        // Then
+        assertThrows(ManagerSaveException.class, writeBehindManager::close, "Ошибка удаления была потеряна.");
+    }
+
+    @DisplayName("GIVEN a client with a latency listener that throws " +
+            "WHEN a value is saved asynchronously " +
+            "THEN the request still completes")
+    @Test
+    public void test12_shouldCompleteRequestWhenLatencyListenerThrows() throws IOException, InterruptedException {
+        // Given
+        KVTaskClient client = new KVTaskClient("8078");
+        client.setLatencyListener((path, nanos) -> {
+            throw new IllegalStateException("Ошибка получателя");
+        });
+        // When
+        client.putAsync("key", "[1]").orTimeout(5, TimeUnit.SECONDS).join();
+        // Then
+        assertEquals("[1]", client.load("key"), "Значение не было сохранено.");
+    }
+
+    @DisplayName("GIVEN a KVServer with saved values " +
+            "WHEN a range delete is requested with an empty prefix " +
+            "THEN the request is rejected and no key is removed")
+    @Test
+    public void test13_shouldRejectRangeDeleteWithEmptyPrefix() throws IOException, InterruptedException {
+        // Given
+        KVTaskClient client = new KVTaskClient("8078");
+        client.put("tasks/1", "[1]");
+        client.put("history/1", "1");
+        // When
+        CompletableFuture<Void> delete = client.deleteRangeAsync("");
+        // Then
+        assertThrows(CompletionException.class, delete::join, "Удаление всех ключей не было отклонено.");
+        assertEquals(2, client.loadRange("").size(), "Ключи были удалены.");
+    }
+
+    @DisplayName("GIVEN an HTTPManager with a Task, an Epic and a Subtask saved on the server " +
+            "WHEN the manager is loaded from the server and a new Task is created " +
+            "THEN the new Task gets a new id and the saved objects stay on the server")
+    @Test
+    public void test14_shouldContinueIdsAfterLoadFromServer() throws IOException, InterruptedException {
+        // Given
+        Task task = new Task("Звонок курьеру", "Перенос сроков доставки");
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок");
+        manager.createTask(task);
+        manager.createEpic(epic);
+        manager.createSubtask(subtask, epic.getId());
+        // When
+        HTTPTaskManager loadedManager = HTTPTaskManager.loadFromServer("8078");
+        Task newTask = new Task("Прогулка с собакой", "Поводок за дверью");
+        loadedManager.createTask(newTask);
+        HTTPTaskManager reloadedManager = HTTPTaskManager.loadFromServer("8078");
+        // Then
+        assertEquals(subtask.getId() + 1, newTask.getId(), "Новая задача получила id сохранённой.");
+        assertEquals(List.of(task, newTask), reloadedManager.getListOfTasks(), "Сохранённая задача перезаписана.");
+        assertEquals(List.of(epic), reloadedManager.getListOfEpics(), "Сохранённый эпик потерян.");
+        assertEquals(List.of(subtask), reloadedManager.getListOfSubtasks(), "Сохранённая подзадача потеряна.");
+    }
+
+    @DisplayName("GIVEN a KVTaskClient " +
+            "WHEN a missing key is loaded asynchronously and a compare-and-set is sent to a stopped server " +
+            "THEN the load returns an empty value and the compare-and-set fails instead of reporting a conflict")
+    @Test
+    public void test15_shouldTellConflictFromFailedRequest() throws IOException, InterruptedException {
+        // Given
+        KVTaskClient client = new KVTaskClient("8078");
+        // When
+        String missing = client.loadAsync("missing").join();
+        String loaded = client.load("missing");
+        server.stop();
+        // Then
+        assertEquals(loaded, missing, "Значения не совпадают.");
+        assertEquals("", missing, "Отсутствующий ключ загружен со значением.");
+        assertThrows(UncheckedIOException.class, () -> client.compareAndSet("counter", KVStore.NO_VERSION, "0"),
+                "Ошибка запроса принята за конфликт версий.");
+    }
+
+    @DisplayName("GIVEN a closed HTTPManager with write-behind " +
+            "WHEN tasks are created and updated " +
+            "THEN the changes are sent to the server at once without an error")
+    @Test
+    public void test16_shouldSendChangesSynchronouslyAfterClose() throws IOException, InterruptedException {
+        // Given
+        HTTPTaskManager writeBehindManager = new HTTPTaskManager("8078", 60_000, 1);
+        writeBehindManager.close();
+        Task task = new Task("Звонок курьеру", "Перенос сроков доставки");
+        // When
+        writeBehindManager.createTask(task);
+        writeBehindManager.updateTask(task.getId(), new Task("Звонок курьеру", "Перенос на завтра"),
+                Status.IN_PROGRESS);
+        writeBehindManager.flush();
+        writeBehindManager.close();
+        // Then
+        HTTPTaskManager loadedManager = HTTPTaskManager.loadFromServer("8078");
+        assertEquals(1, loadedManager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(Status.IN_PROGRESS, loadedManager.getListOfTasks().get(0).getStatus(),
+                "Задача не была обновлена.");
+    }
 }
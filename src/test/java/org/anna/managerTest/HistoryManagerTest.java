@@ -2,6 +2,8 @@ package org.anna.managerTest;
 
 import org.anna.server.KVServer;
 import org.anna.taskManager.manager.Managers;
+import org.anna.taskManager.manager.historyManager.HistoryManager;
+import org.anna.taskManager.manager.historyManager.HistoryPage;
 import org.anna.taskManager.manager.taskManager.TaskManager;
 import org.anna.taskManager.tasks.*;
 import org.junit.jupiter.api.AfterEach;
@@ -12,6 +14,10 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -218,4 +224,110 @@ public class HistoryManagerTest {
         assertEquals(2, manager.getHistoryManager().size(), "Неверное количество задач.");
         assertFalse(manager.getHistoryManager().contains(epic1), "Задача не была удалена.");
     }
+
+    @DisplayName("GIVEN a history of a thousand tasks " +
+            "WHEN more tasks are viewed, one is removed and the history is read page by page " +
+            "THEN the oldest views are evicted and the pages follow the order of views")
+    @Test
+    public void test11_shouldEvictOldestViewsAndReturnPagesOfLargeHistory() {
+        // Given
+        HistoryManager history = Managers.getDefaultHistory(1000);
+        List<Task> views = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            Task task = new Task("Задача " + i, "Без времени");
+            task.setId(i);
+            views.add(task);
+        }
+        // When
+        views.forEach(history::add);
+        history.remove(750);
+        history.add(views.get(600));
+        HistoryPage firstPage = history.getHistory(-1, 400);
+        HistoryPage secondPage = history.getHistory(firstPage.getCursor(), 400);
+        HistoryPage lastPage = history.getHistory(secondPage.getCursor(), 400);
+        // Then
+        List<Task> expected = new ArrayList<>(views.subList(500, 1500));
+        expected.remove(views.get(750));
+        expected.remove(views.get(600));
+        expected.add(views.get(600));
+        assertEquals(expected, history.getHistory(), "Неверный порядок просмотров.");
+        assertEquals(expected.subList(0, 400), firstPage.getTasks(), "Неверная первая страница.");
+        assertEquals(expected.subList(400, 800), secondPage.getTasks(), "Неверная вторая страница.");
+        assertEquals(expected.subList(800, 999), lastPage.getTasks(), "Неверная последняя страница.");
+        assertEquals(expected.subList(0, 10), history.getHistory(100, 10).getTasks(),
+                "Страница после вытесненной задачи не начинается с самого давнего просмотра.");
+        assertThrows(IllegalArgumentException.class, () -> Managers.getDefaultHistory(0),
+                "Создана история нулевого размера.");
+    }
+
+    @DisplayName("GIVEN a history of a hundred tasks " +
+            "WHEN tasks with colliding and sparse ids are viewed and removed at random " +
+            "THEN the history matches the views in order of the last view")
+    @Test
+    public void test12_shouldKeepOrderOfViewsOnRandomAddsAndRemoves() {
+        // Given
+        HistoryManager history = Managers.getDefaultHistory(100);
+        LinkedHashMap<Long, Task> expected = new LinkedHashMap<>();
+        Random random = new Random(7);
+        Task[] tasks = new Task[500];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task("Задача " + i, "Без времени");
+            tasks[i].setId(i % 2 == 0 ? i : (long) i << 32);
+        }
+        // When
+        for (int step = 0; step < 50000; step++) {
+            Task task = tasks[random.nextInt(step < 10000 ? 150 : tasks.length)];
+            if (random.nextInt(4) == 0) {
+                history.remove(task.getId());
+                expected.remove(task.getId());
+            } else {
+                history.add(task);
+                expected.remove(task.getId());
+                expected.put(task.getId(), task);
+                if (expected.size() > 100) {
+                    expected.remove(expected.keySet().iterator().next());
+                }
+            }
+        }
+        // Then
+        assertEquals(new ArrayList<>(expected.values()), history.getHistory(), "Неверный порядок просмотров.");
+    }
+
+    @DisplayName("GIVEN a history read page by page " +
+            "WHEN the last task of a page is viewed again and another task is removed between pages " +
+            "THEN the next pages neither repeat nor skip tasks and the re-viewed task comes last")
+    @Test
+    public void test13_shouldContinuePagesAfterRemoveAndRepeatedView() {
+        // Given
+        HistoryManager history = Managers.getDefaultHistory(100);
+        List<Task> views = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Task task = new Task("Задача " + i, "Без времени");
+            task.setId(i);
+            views.add(task);
+            history.add(task);
+        }
+        HistoryPage firstPage = history.getHistory(-1, 3);
+        // When
+        history.add(views.get(2));
+        history.remove(3);
+        HistoryPage secondPage = history.getHistory(firstPage.getCursor(), 3);
+        history.remove(6);
+        history.add(views.get(6));
+        history.remove(5);
+        HistoryPage thirdPage = history.getHistory(secondPage.getCursor(), 3);
+        HistoryPage lastPage = history.getHistory(thirdPage.getCursor(), 3);
+        // Then
+        assertEquals(views.subList(0, 3), firstPage.getTasks(), "Неверная первая страница.");
+        assertEquals(List.of(views.get(4), views.get(5), views.get(6)), secondPage.getTasks(),
+                "Страница после повторно просмотренной задачи начинается не с того места.");
+        assertEquals(List.of(views.get(7), views.get(8), views.get(9)), thirdPage.getTasks(),
+                "Страница после удалённой задачи начинается не с того места.");
+        assertEquals(List.of(views.get(2), views.get(6)), lastPage.getTasks(),
+                "Повторно просмотренные задачи не попали в конец истории.");
+        assertEquals(lastPage.getCursor(), history.getHistory(lastPage.getCursor(), 3).getCursor(),
+                "Курсор пустой страницы изменился.");
+        assertTrue(history.getHistory(lastPage.getCursor(), 3).getTasks().isEmpty(),
+                "После последней страницы остались задачи.");
+    }
 }
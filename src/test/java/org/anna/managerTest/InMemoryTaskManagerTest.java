@@ -1,6 +1,7 @@
 package org.anna.managerTest;
 
 import org.anna.taskManager.manager.taskManager.InMemoryTaskManager;
+import org.anna.taskManager.manager.taskManager.PriorityCursor;
 import org.anna.taskManager.manager.taskManager.TaskManager;
 import org.anna.taskManager.tasks.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -691,5 +692,227 @@ class InMemoryTaskManagerTest {
         assertEquals(t2, tasks.get(2), "Порядок задач не соответствует желаемому результату.");
         assertEquals(t3, tasks.get(3), "Порядок задач не соответствует желаемому результату.");
     }
-}
 
+    @DisplayName("GIVEN instances of Task and Subtask created " +
+            "WHEN conflicts are requested for the interval overlapping some of them " +
+            "THEN only overlapping tasks are returned in the start time ascending order")
+    @Test
+    public void test34_shouldReturnTasksConflictingWithTheInterval() {
+        // Given
+        Task t1 = new Task("Прогулка", "Поводок за дверью, не забыть намордник", 60,
+                LocalDateTime.of(2022, Month.APRIL, 28, 10, 0));
+        Task t2 = new Task("Покупка", "В пятёрочке", 15,
+                LocalDateTime.of(2022, Month.APRIL, 28, 12, 0));
+        Task t3 = new Task("Кодинг", "Доделать проект", 30,
+                LocalDateTime.of(2022, Month.APRIL, 28, 15, 0));
+        manager.createTask(t1);
+        manager.createTask(t2);
+        manager.createTask(t3);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createEpic(epic);
+        Subtask s1 = new Subtask("Авиабилеты", "Рейс без пересадок", 30,
+                LocalDateTime.of(2022, Month.APRIL, 28, 13, 0));
+        manager.createSubtask(s1, epic.getId());
+        // When
+        List<Task> conflicts = manager.findConflicts(LocalDateTime.of(2022, Month.APRIL, 28, 10, 30),
+                LocalDateTime.of(2022, Month.APRIL, 28, 13, 0));
+        // Then
+        assertEquals(3, conflicts.size(), "Неверное количество задач.");
+        assertEquals(t1, conflicts.get(0), "Порядок задач не соответствует желаемому результату.");
+        assertEquals(t2, conflicts.get(1), "Порядок задач не соответствует желаемому результату.");
+        assertEquals(s1, conflicts.get(2), "Порядок задач не соответствует желаемому результату.");
+        assertTrue(manager.findConflicts(LocalDateTime.of(2022, Month.APRIL, 28, 16, 0),
+                LocalDateTime.of(2022, Month.APRIL, 28, 17, 0)).isEmpty(), "Найдено лишнее пересечение.");
+    }
+
+    @DisplayName("GIVEN instances of Task created " +
+            "WHEN a Task is moved so that it overlaps only its own previous time " +
+            "THEN the Task is updated and the old time becomes free")
+    @Test
+    public void test35_shouldUpdateTaskOverlappingOnlyItself() {
+        // Given
+        Task t1 = new Task("Прогулка", "Поводок за дверью, не забыть намордник", 60,
+                LocalDateTime.of(2022, Month.APRIL, 28, 12, 0));
+        manager.createTask(t1);
+        Task t2 = new Task("Прогулка", "Поводок за дверью, не забыть намордник", 60,
+                LocalDateTime.of(2022, Month.APRIL, 28, 12, 30));
+        // When
+        manager.updateTask(t1.getId(), t2, Status.IN_PROGRESS);
+        Task t3 = new Task("Покупка", "В пятёрочке", 15,
+                LocalDateTime.of(2022, Month.APRIL, 28, 12, 0));
+        manager.createTask(t3);
+        // Then
+        assertEquals(2, manager.getListOfTasks().size(), "Неверное количество задач.");
+        assertEquals(2, manager.getPrioritizedTasks().size(), "Неверное количество задач.");
+        assertTrue(manager.getListOfTasks().contains(t2), "Задача не была изменена.");
+        assertTrue(manager.getListOfTasks().contains(t3), "Задача не была добавлена.");
+    }
+
+    @DisplayName("GIVEN two Epics with Subtasks, one Subtask is in the history " +
+            "WHEN the first Epic is removed " +
+            "THEN only its Subtasks are removed from the map, the history and the prioritized list")
+    @Test
+    public void test36_shouldRemoveOnlySubtasksOfTheRemovedEpic() {
+        // Given
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        Epic otherEpic = new Epic("Переезд", "Собрать вещи");
+        manager.createEpic(epic);
+        manager.createEpic(otherEpic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок", 30,
+                LocalDateTime.of(2022, Month.APRIL, 26, 23, 30));
+        Subtask otherSubtask = new Subtask("Коробки", "Купить двадцать коробок", 60,
+                LocalDateTime.of(2022, Month.APRIL, 27, 10, 0));
+        manager.createSubtask(subtask, epic.getId());
+        manager.createSubtask(new Subtask("Гостиница", "Номер с видом на горы"), epic.getId());
+        manager.createSubtask(otherSubtask, otherEpic.getId());
+        manager.getSubtaskById(subtask.getId());
+        // When
+        manager.removeEpicById(epic.getId());
+        // Then
+        assertEquals(List.of(otherSubtask), manager.getListOfSubtasks(), "Удалены чужие подзадачи.");
+        assertEquals(List.of(otherSubtask), manager.getAllEpicSubtasks(otherEpic.getId()),
+                "Неверный список подзадач эпика.");
+        assertTrue(manager.getAllEpicSubtasks(epic.getId()).isEmpty(), "Подзадачи эпика не удалены.");
+        assertTrue(manager.getHistoryManager().isEmpty(), "Подзадача осталась в истории.");
+        assertEquals(List.of(otherSubtask), new ArrayList<>(manager.getPrioritizedTasks()),
+                "Неверный список приоритетов.");
+    }
+
+    @DisplayName("GIVEN an Epic with three scheduled Subtasks " +
+            "WHEN Subtasks are updated and the earliest ones are removed " +
+            "THEN the Epic's status, duration, start and end time follow the remaining Subtasks")
+    @Test
+    public void test37_shouldKeepEpicStatusAndTimeUpToDateOnSubtaskChanges() {
+        // Given
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createEpic(epic);
+        LocalDateTime startTime = LocalDateTime.of(2022, Month.APRIL, 26, 20, 0);
+        Subtask first = new Subtask("Авиабилеты", "Рейс без пересадок", 30, startTime);
+        Subtask second = new Subtask("Гостиница", "Номер с видом на горы", 45, startTime.plusHours(1));
+        Subtask last = new Subtask("Страховка", "Оформить онлайн", 60, startTime.plusHours(3));
+        manager.createSubtask(first, epic.getId());
+        manager.createSubtask(second, epic.getId());
+        manager.createSubtask(last, epic.getId());
+        // When
+        manager.updateSubtask(second.getId(), new Subtask("Гостиница", "Номер с видом на горы", 45,
+                startTime.plusHours(1)), Status.DONE);
+        manager.removeSubtaskById(first.getId());
+        // Then
+        assertEquals(Status.IN_PROGRESS, epic.getStatus(), "Неверный статус эпика.");
+        assertEquals(105, epic.getDuration(), "Неверная продолжительность эпика.");
+        assertEquals(startTime.plusHours(1), epic.getStartTime(), "Неверное время начала эпика.");
+        assertEquals(startTime.plusHours(4), epic.getEndTime(), "Неверное время окончания эпика.");
+        // When
+        manager.updateSubtask(last.getId(), new Subtask("Страховка", "Оформить онлайн"), Status.DONE);
+        // Then
+        assertEquals(Status.DONE, epic.getStatus(), "Неверный статус эпика.");
+        assertEquals(45, epic.getDuration(), "Неверная продолжительность эпика.");
+        assertEquals(startTime.plusMinutes(105), epic.getEndTime(), "Неверное время окончания эпика.");
+    }
+
+    @DisplayName("GIVEN Tasks and Subtasks created out of schedule order " +
+            "WHEN they are read page by page from a cursor " +
+            "THEN the pages follow id order and the prioritized order without gaps or repeats, " +
+            "even after the cursor's Task is removed")
+    @Test
+    public void test38_shouldReturnPagesFromCursor() {
+        // Given
+        LocalDateTime startTime = LocalDateTime.of(2022, Month.APRIL, 26, 20, 0);
+        Task late = new Task("Прогулка с собакой", "Поводок за дверью", 30, startTime.plusHours(2));
+        Task unscheduled = new Task("Купить хлеб", "Бородинский");
+        Task early = new Task("Зарядка", "Десять минут", 10, startTime);
+        manager.createTask(late);
+        manager.createTask(unscheduled);
+        manager.createTask(early);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createEpic(epic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок", 30, startTime.plusHours(1));
+        manager.createSubtask(subtask, epic.getId());
+        // When
+        List<Task> firstTasks = manager.getTasksPage(-1, 2);
+        List<Task> lastTasks = manager.getTasksPage(firstTasks.get(1).getId(), 2);
+        List<Task> firstPrioritized = manager.getPrioritizedTasksPage(null, 2);
+        List<Task> lastPrioritized = manager.getPrioritizedTasksPage(PriorityCursor.after(firstPrioritized.get(1)), 5);
+        // Then
+        assertEquals(List.of(late, unscheduled), firstTasks, "Неверная первая страница задач.");
+        assertEquals(List.of(early), lastTasks, "Неверная последняя страница задач.");
+        assertEquals(List.of(epic), manager.getEpicsPage(-1, 10), "Неверная страница эпиков.");
+        assertEquals(List.of(subtask), manager.getSubtasksPage(-1, 10), "Неверная страница подзадач.");
+        assertTrue(manager.getSubtasksPage(subtask.getId(), 10).isEmpty(),
+                "Страница после последней подзадачи не пуста.");
+        assertEquals(List.of(early, subtask), firstPrioritized, "Неверная первая страница приоритетов.");
+        assertEquals(List.of(late, unscheduled), lastPrioritized, "Неверная последняя страница приоритетов.");
+        // When
+        PriorityCursor cursor = PriorityCursor.after(subtask);
+        manager.removeSubtaskById(subtask.getId());
+        manager.updateTask(early.getId(), new Task("Зарядка", "Десять минут", 10, startTime.plusHours(5)),
+                Status.NEW);
+        // Then
+        assertEquals(List.of(late, manager.getTaskById(early.getId()).orElseThrow(), unscheduled),
+                manager.getPrioritizedTasksPage(cursor, 5),
+                "Страница после удалённой задачи курсора не продолжается с её позиции.");
+    }
+
+    @DisplayName("GIVEN a Task, an Epic and a Subtask " +
+            "WHEN their existence is checked by id " +
+            "THEN only ids of the matching type are found and the history stays empty")
+    @Test
+    public void test39_shouldCheckExistenceWithoutRecordingHistory() {
+        // Given
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью");
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createTask(task);
+        manager.createEpic(epic);
+        Subtask subtask = new Subtask("Авиабилеты", "Рейс без пересадок");
+        manager.createSubtask(subtask, epic.getId());
+        // When
+        boolean taskFound = manager.containsTask(task.getId());
+        boolean epicFound = manager.containsEpic(epic.getId());
+        boolean subtaskFound = manager.containsSubtask(subtask.getId());
+        // Then
+        assertTrue(taskFound, "Задача не найдена.");
+        assertTrue(epicFound, "Эпик не найден.");
+        assertTrue(subtaskFound, "Подзадача не найдена.");
+        assertFalse(manager.containsTask(epic.getId()), "Эпик найден среди задач.");
+        assertFalse(manager.containsSubtask(task.getId()), "Задача найдена среди подзадач.");
+        assertTrue(manager.getHistoryManager().isEmpty(), "Проверка наличия попала в историю.");
+    }
+
+    @DisplayName("GIVEN a scheduled Task and an Epic with scheduled Subtasks changed through getters " +
+            "WHEN they are updated and removed " +
+            "THEN the prioritized list, the schedule and the Epic follow the values they were added with")
+    @Test
+    public void test40_shouldIndexTasksByValuesAtTheTimeOfAdding() {
+        // Given
+        LocalDateTime startTime = LocalDateTime.of(2022, Month.APRIL, 26, 20, 0);
+        Task task = new Task("Прогулка с собакой", "Поводок за дверью", 30, startTime);
+        manager.createTask(task);
+        Epic epic = new Epic("Отпуск", "Поездка в горы в декабре");
+        manager.createEpic(epic);
+        Subtask first = new Subtask("Авиабилеты", "Рейс без пересадок", 30, startTime.plusHours(1));
+        Subtask second = new Subtask("Гостиница", "Номер с видом на горы", 45, startTime.plusHours(2));
+        manager.createSubtask(first, epic.getId());
+        manager.createSubtask(second, epic.getId());
+        manager.getTaskById(task.getId()).orElseThrow().setStartTime(startTime.plusDays(1));
+        Subtask stored = manager.getSubtaskById(first.getId()).orElseThrow();
+        stored.setStartTime(startTime.plusDays(2));
+        stored.setDuration(120);
+        stored.setStatus(Status.DONE);
+        // When
+        manager.updateTask(task.getId(), new Task("Прогулка с собакой", "Поводок за дверью", 30,
+                startTime.plusHours(3)), Status.NEW);
+        manager.removeSubtaskById(first.getId());
+        // Then
+        assertEquals(List.of(second, manager.getTaskById(task.getId()).orElseThrow()),
+                new ArrayList<>(manager.getPrioritizedTasks()), "Неверный список приоритетов.");
+        assertTrue(manager.findConflicts(startTime, startTime.plusHours(1).plusMinutes(30)).isEmpty(),
+                "В расписании остались удалённые интервалы.");
+        assertEquals(Status.NEW, epic.getStatus(), "Неверный статус эпика.");
+        assertEquals(45, epic.getDuration(), "Неверная продолжительность эпика.");
+        assertEquals(startTime.plusHours(2), epic.getStartTime(), "Неверное время начала эпика.");
+        assertEquals(startTime.plusHours(2).plusMinutes(45), epic.getEndTime(), "Неверное время окончания эпика.");
+        Task free = new Task("Зарядка", "Десять минут", 10, startTime);
+        manager.createTask(free);
+        assertTrue(manager.getPrioritizedTasks().contains(free), "Освободившееся время осталось занятым.");
+    }
+}